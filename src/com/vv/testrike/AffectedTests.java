@@ -0,0 +1,85 @@
+package com.vv.testrike;
+
+import com.intellij.diff.comparison.ComparisonManager;
+import com.intellij.diff.comparison.ComparisonPolicy;
+import com.intellij.diff.fragments.LineFragment;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Maps changed production code to the tests exercising it through the {@link TestLinkIndex}. A changed method
+ * maps to the test methods calling it on the {@code @InjectMocks} field; a method no test calls directly, such
+ * as a private helper, maps to the whole test classes of its class. Changed test methods map to themselves.
+ * Must be called inside a read action.
+ */
+class AffectedTests {
+
+    private AffectedTests() {
+    }
+
+    /**
+     * The methods of the file touched by the lines which differ from the text before the change,
+     * or all its methods if the file is new.
+     *
+     * @param beforeText the text of the file before the change, null for a new file
+     */
+    @NotNull
+    static Set<PsiMethod> findChangedMethods(@NotNull PsiFile file, @Nullable CharSequence beforeText, @NotNull ProgressIndicator indicator) {
+        Set<PsiMethod> methods = new LinkedHashSet<>();
+        if (beforeText == null) {
+            methods.addAll(PsiTreeUtil.findChildrenOfType(file, PsiMethod.class));
+            return methods;
+        }
+        Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+        if (document == null) {
+            return methods;
+        }
+
+        for (LineFragment fragment : ComparisonManager.getInstance().compareLines(beforeText, document.getImmutableCharSequence(),
+                ComparisonPolicy.IGNORE_WHITESPACES, indicator)) {
+            int startOffset = fragment.getStartOffset2();
+            int endOffset = Math.max(fragment.getEndOffset2(), startOffset);
+            PsiElement element = file.findElementAt(Math.min(startOffset, Math.max(document.getTextLength() - 1, 0)));
+            while (element != null && element.getTextRange().getStartOffset() <= endOffset) {
+                PsiMethod method = PsiTreeUtil.getParentOfType(element, PsiMethod.class, false);
+                if (method != null) {
+                    methods.add(method);
+                    element = PsiTreeUtil.nextLeaf(method);
+                } else {
+                    element = PsiTreeUtil.nextLeaf(element);
+                }
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * The test methods and test classes to run for the changed methods, in the order of the methods.
+     */
+    @NotNull
+    static Set<PsiElement> findTests(@NotNull Collection<PsiMethod> changedMethods) {
+        Set<PsiElement> tests = new LinkedHashSet<>();
+        for (PsiMethod method : changedMethods) {
+            PsiClass psiClass = method.getContainingClass();
+            if (psiClass == null) {
+                continue;
+            }
+            if (GotoLinkedTestHandler.isTestClass(psiClass)) {
+                tests.add(method.isConstructor() ? psiClass : method);
+            } else {
+                tests.addAll(GotoLinkedTestHandler.findTests(psiClass, method));
+            }
+        }
+        // a test class covers its methods
+        tests.removeIf(test -> test instanceof PsiMethod && tests.contains(((PsiMethod) test).getContainingClass()));
+        return tests;
+    }
+}
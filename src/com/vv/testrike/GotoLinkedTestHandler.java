@@ -0,0 +1,154 @@
+package com.vv.testrike;
+
+import com.intellij.codeInsight.CodeInsightActionHandler;
+import com.intellij.codeInsight.daemon.impl.PsiElementListNavigator;
+import com.intellij.ide.util.DefaultPsiElementCellRenderer;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testIntegration.GotoTestOrCodeHandler;
+import com.intellij.util.PsiNavigateUtil;
+import com.intellij.util.indexing.FileBasedIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Navigates between a production class and its tests through the {@link TestLinkIndex}: from a production
+ * method to the test methods calling it, from a test method to the production methods it calls, and between
+ * the classes elsewhere. When the index knows no link, the platform's name based search is used.
+ */
+class GotoLinkedTestHandler implements CodeInsightActionHandler {
+
+    @Override
+    public void invoke(@NotNull Project project, @NotNull Editor editor, @NotNull PsiFile file) {
+        PsiElement element = GotoTestOrCodeHandler.getSelectedElement(editor, file);
+        PsiClass psiClass = PsiTreeUtil.getParentOfType(element, PsiClass.class, false);
+        PsiMethod method = PsiTreeUtil.getParentOfType(element, PsiMethod.class, false);
+        if (psiClass == null) {
+            new GotoTestOrCodeHandler().invoke(project, editor, file);
+            return;
+        }
+
+        List<PsiElement> targets = isTestClass(psiClass) ? findSubjects(psiClass, method) : findTests(psiClass, method);
+        if (targets.isEmpty()) {
+            new GotoTestOrCodeHandler().invoke(project, editor, file);
+        } else if (targets.size() == 1) {
+            PsiNavigateUtil.navigate(targets.get(0));
+        } else {
+            NavigatablePsiElement[] navigatables = targets.stream()
+                    .filter(target -> target instanceof NavigatablePsiElement)
+                    .map(target -> (NavigatablePsiElement) target)
+                    .toArray(NavigatablePsiElement[]::new);
+            PsiElementListNavigator.openTargets(editor, navigatables, "Choose Target for " + psiClass.getName(), null,
+                    new DefaultPsiElementCellRenderer());
+        }
+    }
+
+    @Override
+    public boolean startInWriteAction() {
+        return false;
+    }
+
+    /**
+     * Whether the class has a subject field, read syntactically: an {@code @InjectMocks} field, or a final field
+     * constructing the class the test is named after, see {@link TestLinkIndex#isDirectlyConstructedSubject}.
+     */
+    static boolean isTestClass(@NotNull PsiClass psiClass) {
+        return TestLinkIndex.findSubjectField(psiClass) != null;
+    }
+
+    /**
+     * Whether the index links a test class to a class of this short name. The link is not confirmed by resolving,
+     * so it is cheap enough for an action update.
+     */
+    static boolean hasLinkedTests(@NotNull PsiClass productionClass) {
+        String name = productionClass.getName();
+        return name != null && !FileBasedIndex.getInstance()
+                .getContainingFiles(TestLinkIndex.NAME, name, GlobalSearchScope.projectScope(productionClass.getProject())).isEmpty();
+    }
+
+    /**
+     * The test methods calling the method, or the test classes of the production class if the method is null
+     * or is not called by any test.
+     */
+    @NotNull
+    static List<PsiElement> findTests(@NotNull PsiClass productionClass, @Nullable PsiMethod method) {
+        String name = productionClass.getName();
+        if (name == null) {
+            return new ArrayList<>();
+        }
+        // the links are resolved after the index is left, since an index cannot be queried while it is processed
+        Map<VirtualFile, TestLinkIndex.TestLink> links = new LinkedHashMap<>();
+        FileBasedIndex.getInstance().processValues(TestLinkIndex.NAME, name, null, (file, link) -> {
+            links.put(file, link);
+            return true;
+        }, GlobalSearchScope.projectScope(productionClass.getProject()));
+
+        List<PsiElement> testClasses = new ArrayList<>();
+        List<PsiElement> testMethods = new ArrayList<>();
+        PsiManager psiManager = productionClass.getManager();
+        for (Map.Entry<VirtualFile, TestLinkIndex.TestLink> entry : links.entrySet()) {
+            TestLinkIndex.TestLink link = entry.getValue();
+            PsiFile psiFile = psiManager.findFile(entry.getKey());
+            PsiClass testClass = psiFile == null ? null : findClass(psiFile, link.getTestClassName());
+            if (testClass != null && isTestOf(testClass, productionClass)) {
+                testClasses.add(testClass);
+                if (method != null) {
+                    for (String testMethodName : link.getTestMethods(method.getName())) {
+                        Collections.addAll(testMethods, testClass.findMethodsByName(testMethodName, false));
+                    }
+                }
+            }
+        }
+        return testMethods.isEmpty() ? testClasses : testMethods;
+    }
+
+    /**
+     * The production methods the test method calls on the {@code @InjectMocks} field, or the production class
+     * if the test method is null or calls none.
+     */
+    @NotNull
+    static List<PsiElement> findSubjects(@NotNull PsiClass testClass, @Nullable PsiMethod testMethod) {
+        List<PsiElement> subjects = new ArrayList<>();
+        PsiField subjectField = TestLinkIndex.findSubjectField(testClass);
+        PsiClass productionClass = subjectField == null || !(subjectField.getType() instanceof PsiClassType) ? null
+                : ((PsiClassType) subjectField.getType()).resolve();
+        if (productionClass == null) {
+            return subjects;
+        }
+        if (testMethod != null && testClass.equals(testMethod.getContainingClass())) {
+            for (String calledMethod : TestLinkIndex.findCalledMethods(testMethod, subjectField.getName())) {
+                Collections.addAll(subjects, productionClass.findMethodsByName(calledMethod, true));
+            }
+        }
+        if (subjects.isEmpty()) {
+            subjects.add(productionClass);
+        }
+        return subjects;
+    }
+
+    private static boolean isTestOf(@NotNull PsiClass testClass, @NotNull PsiClass productionClass) {
+        PsiField subjectField = TestLinkIndex.findSubjectField(testClass);
+        return subjectField != null && subjectField.getType() instanceof PsiClassType
+                && productionClass.equals(((PsiClassType) subjectField.getType()).resolve());
+    }
+
+    @Nullable
+    private static PsiClass findClass(@NotNull PsiFile psiFile, @NotNull String name) {
+        for (PsiClass psiClass : PsiTreeUtil.findChildrenOfType(psiFile, PsiClass.class)) {
+            if (name.equals(psiClass.getName())) {
+                return psiClass;
+            }
+        }
+        return null;
+    }
+}
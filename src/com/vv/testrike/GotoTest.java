@@ -9,11 +9,15 @@ import com.intellij.openapi.actionSystem.PlatformDataKeys;
 import com.intellij.openapi.actionSystem.Presentation;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileEditor;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtilBase;
 import com.intellij.testIntegration.GotoTestOrCodeHandler;
 import com.intellij.testIntegration.TestFinderHelper;
@@ -27,30 +31,33 @@ public class GotoTest extends BaseCodeInsightAction {
     @NotNull
     @Override
     protected CodeInsightActionHandler getHandler() {
-        return new GotoTestOrCodeHandler();
+        return new GotoLinkedTestHandler();
     }
 
     @Override
     public void update(AnActionEvent e) {
         final Presentation presentation = e.getPresentation();
         presentation.setEnabledAndVisible(false);
-        if (TestFinderHelper.getFinders().length == 0) {
-            return;
-        }
 
+        // the action is not available during indexing anyway, so the index and the finders are not even asked
         Project project = e.getProject();
+        if (project == null || DumbService.isDumb(project)) return;
         Editor editor = e.getData(CommonDataKeys.EDITOR);
-        if (editor == null || project == null) return;
+        if (editor == null) return;
 
         PsiFile psiFile = PsiUtilBase.getPsiFileInEditor(editor, project);
         if (psiFile == null) return;
 
         PsiElement element = GotoTestOrCodeHandler.getSelectedElement(editor, psiFile);
+        PsiClass psiClass = psiFile instanceof PsiJavaFile ? PsiTreeUtil.getParentOfType(element, PsiClass.class, false) : null;
+        boolean linkedTest = psiClass != null && GotoLinkedTestHandler.isTestClass(psiClass);
+        boolean linkedProduction = psiClass != null && !linkedTest && GotoLinkedTestHandler.hasLinkedTests(psiClass);
 
-        if (TestFinderHelper.findSourceElement(element) == null) return;
+        if (!linkedTest && !linkedProduction
+                && (TestFinderHelper.getFinders().length == 0 || TestFinderHelper.findSourceElement(element) == null)) return;
 
         presentation.setEnabledAndVisible(true);
-        if (TestFinderHelper.isTest(element)) {
+        if (linkedTest || !linkedProduction && TestFinderHelper.isTest(element)) {
             presentation.setText(ActionsBundle.message("action.GotoTestSubject.text"));
             presentation.setDescription(ActionsBundle.message("action.GotoTestSubject.description"));
         } else {
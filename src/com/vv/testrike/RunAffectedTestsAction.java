@@ -0,0 +1,145 @@
+package com.vv.testrike;
+
+import com.intellij.execution.Location;
+import com.intellij.execution.PsiLocation;
+import com.intellij.execution.ProgramRunnerUtil;
+import com.intellij.execution.RunManager;
+import com.intellij.execution.RunnerAndConfigurationSettings;
+import com.intellij.execution.actions.ConfigurationContext;
+import com.intellij.execution.executors.DefaultRunExecutor;
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.actionSystem.impl.SimpleDataContext;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vcs.VcsDataKeys;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ChangeListManager;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Runs the tests affected by the selected changes, or by all the uncommitted changes when none is selected,
+ * in one temporary run configuration. The changed production methods are mapped to their tests with
+ * {@link AffectedTests}, and the configuration is made by the test framework's producer of the selected tests,
+ * so JUnit and TestNG tests are run the same way.
+ */
+public class RunAffectedTestsAction extends AnAction {
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null)
+            return;
+
+        Change[] selectedChanges = e.getData(VcsDataKeys.CHANGES);
+        Collection<Change> changes = selectedChanges != null && selectedChanges.length > 0
+                ? Arrays.asList(selectedChanges) : ChangeListManager.getInstance(project).getAllChanges();
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Finding Affected Tests", true) {
+            private final List<SmartPsiElementPointer<PsiElement>> tests = new ArrayList<>();
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                Set<PsiMethod> changedMethods = new LinkedHashSet<>();
+                List<Change> javaChanges = new ArrayList<>();
+                for (Change change : changes) {
+                    VirtualFile file = change.getVirtualFile();
+                    if (file != null && "java".equals(file.getExtension())) {
+                        javaChanges.add(change);
+                    }
+                }
+                for (int i = 0; i < javaChanges.size(); i++) {
+                    indicator.checkCanceled();
+                    indicator.setFraction((double) i / javaChanges.size());
+                    Change change = javaChanges.get(i);
+                    CharSequence beforeText = getBeforeText(change);
+                    changedMethods.addAll(ReadAction.compute(() -> {
+                        PsiFile psiFile = PsiManager.getInstance(myProject).findFile(Objects.requireNonNull(change.getVirtualFile()));
+                        return psiFile == null ? Collections.<PsiMethod>emptySet() : AffectedTests.findChangedMethods(psiFile, beforeText, indicator);
+                    }));
+                }
+
+                indicator.setText("Mapping " + changedMethods.size() + " changed method(s) to tests");
+                ReadAction.run(() -> {
+                    SmartPointerManager pointerManager = SmartPointerManager.getInstance(myProject);
+                    for (PsiElement test : AffectedTests.findTests(changedMethods)) {
+                        tests.add(pointerManager.createSmartPsiElementPointer(test));
+                    }
+                });
+            }
+
+            @Override
+            public void onSuccess() {
+                List<PsiElement> elements = new ArrayList<>();
+                for (SmartPsiElementPointer<PsiElement> test : tests) {
+                    PsiElement element = test.getElement();
+                    if (element != null) {
+                        elements.add(element);
+                    }
+                }
+                if (elements.isEmpty()) {
+                    Notifications.Bus.notify(new Notification("Testrike", "Run affected tests",
+                            "No tests are affected by the changes", NotificationType.INFORMATION), myProject);
+                    return;
+                }
+                run(myProject, elements);
+            }
+        });
+    }
+
+    @Nullable
+    private static CharSequence getBeforeText(@NotNull Change change) {
+        ContentRevision beforeRevision = change.getBeforeRevision();
+        if (beforeRevision == null) {
+            return null;
+        }
+        try {
+            String content = beforeRevision.getContent();
+            return content == null ? "" : content;
+        } catch (VcsException e) {
+            // without the previous content every method of the file counts as changed
+            return null;
+        }
+    }
+
+    private static void run(@NotNull Project project, @NotNull List<PsiElement> tests) {
+        PsiElement first = tests.get(0);
+        Map<String, Object> data = new HashMap<>();
+        data.put(CommonDataKeys.PROJECT.getName(), project);
+        data.put(LangDataKeys.MODULE.getName(), ModuleUtilCore.findModuleForPsiElement(first));
+        data.put(Location.DATA_KEY.getName(), PsiLocation.fromPsiElement(first));
+        data.put(LangDataKeys.PSI_ELEMENT_ARRAY.getName(), tests.toArray(PsiElement.EMPTY_ARRAY));
+
+        ConfigurationContext context = ConfigurationContext.getFromContext(SimpleDataContext.getSimpleContext(data, null));
+        RunnerAndConfigurationSettings settings = context.getConfiguration();
+        if (settings == null) {
+            Notifications.Bus.notify(new Notification("Testrike", "Run affected tests",
+                    tests.size() + " affected test(s) found, but no test framework can run them", NotificationType.WARNING), project);
+            return;
+        }
+        settings.setName("Affected tests (" + tests.size() + ")");
+        RunManager.getInstance(project).setTemporaryConfiguration(settings);
+        ProgramRunnerUtil.executeConfiguration(settings, DefaultRunExecutor.getRunExecutorInstance());
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+}
@@ -0,0 +1,238 @@
+package com.vv.testrike;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Records for every test class with a subject field the production class it tests, by the short name of the
+ * field type, together with the test methods calling each method of the field. The subject is the field annotated
+ * with {@code @InjectMocks}, or in a test which constructs its subject directly, the final field initialised with
+ * a {@code new} expression of the class the test class is named after. The links are
+ * collected syntactically, so a test found by the short name of a class has to be confirmed by resolving
+ * the type of its field. When several classes of one file test the same class, the first one is kept.
+ */
+public class TestLinkIndex extends FileBasedIndexExtension<String, TestLinkIndex.TestLink> {
+
+    public static final ID<String, TestLink> NAME = ID.create("testrike.test.links");
+
+    static final String INJECT_MOCKS = "InjectMocks";
+    private static final String DIRECT_CONSTRUCTION = "= new ";
+
+    @NotNull
+    @Override
+    public ID<String, TestLink> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, TestLink, FileContent> getIndexer() {
+        return inputData -> {
+            CharSequence text = inputData.getContentAsText();
+            if (!StringUtil.contains(text, INJECT_MOCKS) && !StringUtil.contains(text, DIRECT_CONSTRUCTION)) {
+                return Collections.emptyMap();
+            }
+            Map<String, TestLink> result = new HashMap<>();
+            for (PsiClass testClass : PsiTreeUtil.findChildrenOfType(inputData.getPsiFile(), PsiClass.class)) {
+                PsiField subjectField = findSubjectField(testClass);
+                PsiJavaCodeReferenceElement typeReference = subjectField == null || subjectField.getTypeElement() == null ? null
+                        : subjectField.getTypeElement().getInnermostComponentReferenceElement();
+                if (typeReference != null && typeReference.getReferenceName() != null && testClass.getName() != null) {
+                    result.putIfAbsent(typeReference.getReferenceName(), new TestLink(testClass.getName(), findTestMethods(testClass, subjectField.getName())));
+                }
+            }
+            return result;
+        };
+    }
+
+    /**
+     * The field of the test class annotated with {@code @InjectMocks}, by the short name of the annotation,
+     * or else its directly constructed subject, see {@link #isDirectlyConstructedSubject}.
+     */
+    @Nullable
+    public static PsiField findSubjectField(@NotNull PsiClass testClass) {
+        for (PsiField field : testClass.getFields()) {
+            PsiModifierList modifierList = field.getModifierList();
+            if (modifierList == null) {
+                continue;
+            }
+            for (PsiAnnotation annotation : modifierList.getAnnotations()) {
+                PsiJavaCodeReferenceElement reference = annotation.getNameReferenceElement();
+                if (reference != null && INJECT_MOCKS.equals(reference.getReferenceName())) {
+                    return field;
+                }
+            }
+        }
+        for (PsiField field : testClass.getFields()) {
+            if (isDirectlyConstructedSubject(testClass, field)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the field is final and initialised with a {@code new} expression of its own type, and the test class is
+     * named after that type, such as {@code private final OrderService orderService = new OrderService(...)} in
+     * {@code OrderServiceTest}. A production class like {@code LockManager} constructing its {@code Lock} is no test.
+     */
+    public static boolean isDirectlyConstructedSubject(@NotNull PsiClass testClass, @NotNull PsiField field) {
+        PsiTypeElement typeElement = field.getTypeElement();
+        PsiJavaCodeReferenceElement typeReference = typeElement == null ? null : typeElement.getInnermostComponentReferenceElement();
+        PsiExpression initializer = PsiUtil.skipParenthesizedExprDown(field.getInitializer());
+        if (!field.hasModifierProperty(PsiModifier.FINAL) || typeReference == null || !(initializer instanceof PsiNewExpression)) {
+            return false;
+        }
+        PsiJavaCodeReferenceElement classReference = ((PsiNewExpression) initializer).getClassReference();
+        String typeName = typeReference.getReferenceName();
+        return typeName != null && classReference != null && typeName.equals(classReference.getReferenceName())
+                && (typeName + "Test").equals(testClass.getName());
+    }
+
+    /**
+     * The names of the test methods calling a method on the subject field, by the name of the called method.
+     */
+    @NotNull
+    private static Map<String, Set<String>> findTestMethods(@NotNull PsiClass testClass, @NotNull String subjectName) {
+        Map<String, Set<String>> testMethods = new HashMap<>();
+        for (PsiMethod testMethod : testClass.getMethods()) {
+            for (String calledMethod : findCalledMethods(testMethod, subjectName)) {
+                testMethods.computeIfAbsent(calledMethod, name -> new LinkedHashSet<>()).add(testMethod.getName());
+            }
+        }
+        return testMethods;
+    }
+
+    /**
+     * The names of the methods the test method calls on the subject field, in the order of the calls.
+     */
+    @NotNull
+    static Set<String> findCalledMethods(@NotNull PsiMethod testMethod, @NotNull String subjectName) {
+        Set<String> calledMethods = new LinkedHashSet<>();
+        testMethod.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                super.visitMethodCallExpression(expression);
+                PsiReferenceExpression methodExpression = expression.getMethodExpression();
+                PsiExpression qualifier = PsiUtil.skipParenthesizedExprDown(methodExpression.getQualifierExpression());
+                if (qualifier instanceof PsiReferenceExpression && subjectName.equals(((PsiReferenceExpression) qualifier).getReferenceName())
+                        && methodExpression.getReferenceName() != null) {
+                    calledMethods.add(methodExpression.getReferenceName());
+                }
+            }
+        });
+        return calledMethods;
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<TestLink> getValueExternalizer() {
+        return new DataExternalizer<TestLink>() {
+            @Override
+            public void save(@NotNull DataOutput out, TestLink value) throws IOException {
+                IOUtil.writeUTF(out, value.testClassName);
+                out.writeInt(value.testMethods.size());
+                for (Map.Entry<String, Set<String>> entry : value.testMethods.entrySet()) {
+                    IOUtil.writeUTF(out, entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (String testMethod : entry.getValue()) {
+                        IOUtil.writeUTF(out, testMethod);
+                    }
+                }
+            }
+
+            @Override
+            public TestLink read(@NotNull DataInput in) throws IOException {
+                String testClassName = IOUtil.readUTF(in);
+                int size = in.readInt();
+                Map<String, Set<String>> testMethods = new HashMap<>(size);
+                for (int i = 0; i < size; i++) {
+                    String calledMethod = IOUtil.readUTF(in);
+                    int count = in.readInt();
+                    Set<String> names = new LinkedHashSet<>(count);
+                    for (int j = 0; j < count; j++) {
+                        names.add(IOUtil.readUTF(in));
+                    }
+                    testMethods.put(calledMethod, names);
+                }
+                return new TestLink(testClassName, testMethods);
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return 3;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    public static final class TestLink {
+        private final String testClassName;
+        private final Map<String, Set<String>> testMethods;
+
+        TestLink(@NotNull String testClassName, @NotNull Map<String, Set<String>> testMethods) {
+            this.testClassName = testClassName;
+            this.testMethods = testMethods;
+        }
+
+        /**
+         * The short name of the test class in its file.
+         */
+        @NotNull
+        String getTestClassName() {
+            return testClassName;
+        }
+
+        /**
+         * The names of the test methods calling the method of the given name, in the order of the test class.
+         */
+        @NotNull
+        Set<String> getTestMethods(@NotNull String calledMethod) {
+            return testMethods.getOrDefault(calledMethod, Collections.emptySet());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TestLink)) return false;
+            TestLink that = (TestLink) o;
+            return testClassName.equals(that.testClassName) && testMethods.equals(that.testMethods);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * testClassName.hashCode() + testMethods.hashCode();
+        }
+    }
+}
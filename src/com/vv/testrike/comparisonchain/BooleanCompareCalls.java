@@ -0,0 +1,98 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Finds the {@code ComparisonChain.compare(boolean, boolean)} calls, which should be
+ * {@code compareFalseFirst()} or {@code compareTrueFirst()}. The calls of a chain are resolved together
+ * and the result is cached on the outermost call of the chain until the next PSI change, so moving
+ * the caret along the chain resolves nothing again.
+ */
+final class BooleanCompareCalls {
+
+    static final String REPLACEMENT = "compareFalseFirst";
+
+    private BooleanCompareCalls() {
+    }
+
+    /**
+     * @return the call of the {@code compare} reference, if it compares two booleans in a {@code ComparisonChain}
+     */
+    @Nullable
+    static PsiMethodCallExpression findCall(@Nullable PsiElement element) {
+        if (!(element instanceof PsiReferenceExpression) || !(element.getParent() instanceof PsiMethodCallExpression)) {
+            return null;
+        }
+        PsiMethodCallExpression call = (PsiMethodCallExpression) element.getParent();
+        return isCandidate(call) && getBooleanCompareCalls(getOutermostCall(call)).contains(call) ? call : null;
+    }
+
+    /**
+     * Replaces the name of the call with {@link #REPLACEMENT}.
+     */
+    static void replace(@NotNull Project project, @NotNull PsiMethodCallExpression call) {
+        PsiElement nameElement = call.getMethodExpression().getReferenceNameElement();
+        if (nameElement != null) {
+            nameElement.replace(JavaPsiFacade.getElementFactory(project).createIdentifier(REPLACEMENT));
+        }
+    }
+
+    /**
+     * The checks which need no resolve: the name and the number of arguments.
+     */
+    private static boolean isCandidate(@NotNull PsiMethodCallExpression call) {
+        return "compare".equals(call.getMethodExpression().getReferenceName()) && call.getArgumentList().getExpressions().length == 2;
+    }
+
+    @NotNull
+    private static PsiMethodCallExpression getOutermostCall(@NotNull PsiMethodCallExpression call) {
+        PsiMethodCallExpression outermost = call;
+        while (outermost.getParent() instanceof PsiReferenceExpression && outermost.getParent().getParent() instanceof PsiMethodCallExpression) {
+            outermost = (PsiMethodCallExpression) outermost.getParent().getParent();
+        }
+        return outermost;
+    }
+
+    @NotNull
+    private static Set<PsiMethodCallExpression> getBooleanCompareCalls(@NotNull PsiMethodCallExpression outermostCall) {
+        return CachedValuesManager.getCachedValue(outermostCall, () ->
+                CachedValueProvider.Result.create(resolveBooleanCompareCalls(outermostCall), PsiModificationTracker.MODIFICATION_COUNT));
+    }
+
+    @NotNull
+    private static Set<PsiMethodCallExpression> resolveBooleanCompareCalls(@NotNull PsiMethodCallExpression outermostCall) {
+        Set<PsiMethodCallExpression> result = null;
+        PsiExpression expression = outermostCall;
+        while (expression instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression call = (PsiMethodCallExpression) expression;
+            if (isCandidate(call) && isBooleanCompare(call.resolveMethod())) {
+                if (result == null) {
+                    result = new HashSet<>();
+                }
+                result.add(call);
+            }
+            expression = PsiUtil.skipParenthesizedExprDown(call.getMethodExpression().getQualifierExpression());
+        }
+        return result == null ? Collections.emptySet() : result;
+    }
+
+    private static boolean isBooleanCompare(@Nullable PsiMethod method) {
+        PsiClass containingClass = method == null ? null : method.getContainingClass();
+        if (containingClass == null || !GenerateAction.COM_GOOGLE_COMMON_COLLECT_COMPARISON_CHAIN.equals(containingClass.getQualifiedName())) {
+            return false;
+        }
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        return parameters.length == 2 && PsiType.BOOLEAN.equals(parameters[0].getType());
+    }
+}
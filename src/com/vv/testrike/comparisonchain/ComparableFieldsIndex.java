@@ -0,0 +1,215 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Records for every Java file the classes which declare both equals() and compareTo(), together with the
+ * names of the fields the two methods reference. The names are collected syntactically, so a class whose
+ * equals() references a name which compareTo() doesn't is only a candidate of an inconsistency which
+ * has to be confirmed with resolved PSI.
+ */
+public class ComparableFieldsIndex extends FileBasedIndexExtension<String, ComparableFieldsIndex.ComparableFields> {
+
+    public static final ID<String, ComparableFields> NAME = ID.create("testrike.comparable.fields");
+
+    @NotNull
+    @Override
+    public ID<String, ComparableFields> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, ComparableFields, FileContent> getIndexer() {
+        return inputData -> {
+            if (!StringUtil.contains(inputData.getContentAsText(), "compareTo")) {
+                return Collections.emptyMap();
+            }
+            PsiFile psiFile = inputData.getPsiFile();
+            Map<String, ComparableFields> result = new HashMap<>();
+            for (PsiClass psiClass : PsiTreeUtil.findChildrenOfType(psiFile, PsiClass.class)) {
+                PsiMethod equals = findMethod(psiClass, "equals");
+                PsiMethod compareTo = findMethod(psiClass, "compareTo");
+                if (equals != null && compareTo != null && psiClass.getName() != null) {
+                    Set<String> compareToNames = referencedNames(compareTo);
+                    addInitializerNames(psiClass, compareToNames);
+                    result.put(psiClass.getName(), new ComparableFields(referencedNames(equals), compareToNames));
+                }
+            }
+            return result;
+        };
+    }
+
+    private static PsiMethod findMethod(@NotNull PsiClass psiClass, @NotNull String name) {
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (name.equals(method.getName()) && method.getParameterList().getParametersCount() == 1 && method.getBody() != null) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The names of the references which may be fields: not method names, not class name qualifiers,
+     * and not the parameters or locals of the method.
+     */
+    @NotNull
+    private static Set<String> referencedNames(@NotNull PsiMethod method) {
+        Set<String> localNames = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        method.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitVariable(PsiVariable variable) {
+                super.visitVariable(variable);
+                localNames.add(variable.getName());
+            }
+
+            @Override
+            public void visitReferenceExpression(PsiReferenceExpression expression) {
+                super.visitReferenceExpression(expression);
+                String name = expression.getReferenceName();
+                if (name == null || expression.getParent() instanceof PsiMethodCallExpression) {
+                    return;
+                }
+                if (expression.getParent() instanceof PsiReferenceExpression && Character.isUpperCase(name.charAt(0))) {
+                    return;
+                }
+                names.add(name);
+            }
+        });
+        names.removeAll(localNames);
+        return names;
+    }
+
+    /**
+     * Adds the names referenced from the initializers of the static fields among the names,
+     * such as the fields compared by a comparator constant which compareTo() delegates to.
+     */
+    private static void addInitializerNames(@NotNull PsiClass psiClass, @NotNull Set<String> names) {
+        Deque<String> pending = new ArrayDeque<>(names);
+        Set<String> visited = new HashSet<>();
+        while (!pending.isEmpty()) {
+            PsiField field = psiClass.findFieldByName(pending.removeFirst(), false);
+            if (field == null || !field.hasModifierProperty(PsiModifier.STATIC) || field.getInitializer() == null
+                    || !visited.add(field.getName())) {
+                continue;
+            }
+            Set<String> initializerNames = new HashSet<>();
+            field.getInitializer().accept(new JavaRecursiveElementWalkingVisitor() {
+                @Override
+                public void visitReferenceExpression(PsiReferenceExpression expression) {
+                    super.visitReferenceExpression(expression);
+                    String name = expression.getReferenceName();
+                    if (name != null && !(expression.getParent() instanceof PsiMethodCallExpression)) {
+                        initializerNames.add(name);
+                    }
+                }
+            });
+            for (String name : initializerNames) {
+                if (names.add(name)) {
+                    pending.add(name);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<ComparableFields> getValueExternalizer() {
+        return new DataExternalizer<ComparableFields>() {
+            @Override
+            public void save(@NotNull DataOutput out, ComparableFields value) throws IOException {
+                writeNames(out, value.equalsFields);
+                writeNames(out, value.compareToFields);
+            }
+
+            @Override
+            public ComparableFields read(@NotNull DataInput in) throws IOException {
+                return new ComparableFields(readNames(in), readNames(in));
+            }
+        };
+    }
+
+    private static void writeNames(@NotNull DataOutput out, @NotNull Set<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            IOUtil.writeUTF(out, name);
+        }
+    }
+
+    @NotNull
+    private static Set<String> readNames(@NotNull DataInput in) throws IOException {
+        int size = in.readInt();
+        Set<String> names = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(IOUtil.readUTF(in));
+        }
+        return names;
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    public static final class ComparableFields {
+        private final Set<String> equalsFields;
+        private final Set<String> compareToFields;
+
+        ComparableFields(@NotNull Set<String> equalsFields, @NotNull Set<String> compareToFields) {
+            this.equalsFields = equalsFields;
+            this.compareToFields = compareToFields;
+        }
+
+        /**
+         * Whether equals() references a name which compareTo() doesn't.
+         */
+        boolean isInconsistencyCandidate() {
+            return !compareToFields.containsAll(equalsFields);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ComparableFields)) return false;
+            ComparableFields that = (ComparableFields) o;
+            return equalsFields.equals(that.equalsFields) && compareToFields.equals(that.compareToFields);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * equalsFields.hashCode() + compareToFields.hashCode();
+        }
+    }
+}
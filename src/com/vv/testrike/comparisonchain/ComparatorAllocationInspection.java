@@ -0,0 +1,300 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.codeInspection.*;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Reports comparison code which allocates at runtime: {@code Comparator.comparing()} and {@code thenComparing()}
+ * with a primitive key, which box the key on every comparison, and comparators built again on every
+ * iteration of a loop, on every sort or on every call of a comparison method.
+ */
+public class ComparatorAllocationInspection extends LocalInspectionTool {
+
+    private static final String COMPARATOR = CommonClassNames.JAVA_UTIL_COMPARATOR;
+    private static final Set<String> FACTORY_METHODS = new HashSet<>(Arrays.asList(
+            "comparing", "comparingInt", "comparingLong", "comparingDouble", "naturalOrder", "reverseOrder", "nullsFirst", "nullsLast"));
+    private static final Set<String> SORT_METHODS = new HashSet<>(Arrays.asList("sort", "sorted", "parallelSort"));
+    private static final Set<String> HOT_METHODS = new HashSet<>(Arrays.asList("compareTo", "compare", "equals", "hashCode"));
+
+    @NotNull
+    @Override
+    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly, @NotNull LocalInspectionToolSession session) {
+        return new MyVisitor(holder);
+    }
+
+    private static class MyVisitor extends JavaElementVisitor {
+        private final ProblemsHolder myHolder;
+
+        public MyVisitor(ProblemsHolder holder) {
+            myHolder = holder;
+        }
+
+        @Override
+        public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+            super.visitMethodCallExpression(expression);
+            PsiReferenceExpression methodExpression = expression.getMethodExpression();
+            String name = methodExpression.getReferenceName();
+            if (!"comparing".equals(name) && !"thenComparing".equals(name) && !FACTORY_METHODS.contains(name)) {
+                return;
+            }
+            PsiMethod method = expression.resolveMethod();
+            PsiClass containingClass = method == null ? null : method.getContainingClass();
+            if (containingClass == null || !COMPARATOR.equals(containingClass.getQualifiedName())) {
+                return;
+            }
+
+            PsiElement nameElement = methodExpression.getReferenceNameElement();
+            String primitiveName = getPrimitiveMethodName(name, expression);
+            if (primitiveName != null && nameElement != null) {
+                myHolder.registerProblem(nameElement, "#ref() boxes the primitive key on every comparison",
+                        new UsePrimitiveComparingFix(primitiveName));
+            }
+
+            if (method.hasModifierProperty(PsiModifier.STATIC)) {
+                reportRepeatedConstruction(getChain(expression));
+            }
+        }
+
+        /**
+         * Reports the whole comparator chain when it is built on every loop iteration, sort or comparison.
+         */
+        private void reportRepeatedConstruction(@NotNull PsiExpression chain) {
+            String place = getRepeatedPlace(chain);
+            if (place == null) {
+                return;
+            }
+            LocalQuickFix[] fixes = canHoist(chain) ? new LocalQuickFix[]{new HoistComparatorFix()} : LocalQuickFix.EMPTY_ARRAY;
+            myHolder.registerProblem(chain, "Comparator is built again " + place, fixes);
+        }
+    }
+
+    /**
+     * The outermost call of the {@code Comparator} chain the factory call starts, e.g. the
+     * {@code thenComparing()} call of {@code Comparator.comparing(...).thenComparing(...)}.
+     */
+    @NotNull
+    static PsiExpression getChain(@NotNull PsiMethodCallExpression factoryCall) {
+        PsiExpression chain = factoryCall;
+        while (chain.getParent() instanceof PsiReferenceExpression && chain.getParent().getParent() instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression next = (PsiMethodCallExpression) chain.getParent().getParent();
+            PsiType type = next.getType();
+            if (!(type instanceof PsiClassType) || !COMPARATOR.equals(((PsiClassType) type).rawType().getCanonicalText())) {
+                break;
+            }
+            chain = next;
+        }
+        return chain;
+    }
+
+    /**
+     * The name of the primitive specialization of a {@code comparing()} or {@code thenComparing()} call
+     * whose only argument extracts a primitive key, or null.
+     */
+    @Nullable
+    static String getPrimitiveMethodName(@NotNull String name, @NotNull PsiMethodCallExpression expression) {
+        if (!"comparing".equals(name) && !"thenComparing".equals(name)) {
+            return null;
+        }
+        PsiExpression[] arguments = expression.getArgumentList().getExpressions();
+        if (arguments.length != 1) {
+            return null;
+        }
+        PsiType keyType = getKeyType(PsiUtil.skipParenthesizedExprDown(arguments[0]));
+        if (PsiType.INT.equals(keyType) || PsiType.SHORT.equals(keyType) || PsiType.BYTE.equals(keyType) || PsiType.CHAR.equals(keyType)) {
+            return name + "Int";
+        } else if (PsiType.LONG.equals(keyType)) {
+            return name + "Long";
+        } else if (PsiType.DOUBLE.equals(keyType) || PsiType.FLOAT.equals(keyType)) {
+            return name + "Double";
+        }
+        return null;
+    }
+
+    @Nullable
+    private static PsiType getKeyType(@Nullable PsiExpression keyExtractor) {
+        if (keyExtractor instanceof PsiLambdaExpression) {
+            List<PsiExpression> returnExpressions = LambdaUtil.getReturnExpressions((PsiLambdaExpression) keyExtractor);
+            PsiType type = null;
+            for (PsiExpression returnExpression : returnExpressions) {
+                PsiType returnType = returnExpression.getType();
+                if (!(returnType instanceof PsiPrimitiveType) || type != null && !type.equals(returnType)) {
+                    return null;
+                }
+                type = returnType;
+            }
+            return type;
+        }
+        if (keyExtractor instanceof PsiMethodReferenceExpression) {
+            PsiElement resolved = ((PsiMethodReferenceExpression) keyExtractor).resolve();
+            return resolved instanceof PsiMethod ? ((PsiMethod) resolved).getReturnType() : null;
+        }
+        return null;
+    }
+
+    /**
+     * Where the comparator is built more than once, or null. A comparator passed to another comparator
+     * is reported with the outer one.
+     */
+    @Nullable
+    private static String getRepeatedPlace(@NotNull PsiExpression chain) {
+        PsiElement parent = chain.getParent();
+        if (parent instanceof PsiExpressionList && parent.getParent() instanceof PsiMethodCallExpression) {
+            PsiMethodCallExpression call = (PsiMethodCallExpression) parent.getParent();
+            PsiType type = call.getType();
+            if (type instanceof PsiClassType && COMPARATOR.equals(((PsiClassType) type).rawType().getCanonicalText())) {
+                return null;
+            }
+            String name = call.getMethodExpression().getReferenceName();
+            if (SORT_METHODS.contains(name)) {
+                return "on every " + name + "() call";
+            }
+        }
+        for (PsiElement element = chain.getParent(); element != null; element = element.getParent()) {
+            if (element instanceof PsiLoopStatement) {
+                return "on every loop iteration";
+            }
+            if (element instanceof PsiMethod) {
+                return HOT_METHODS.contains(((PsiMethod) element).getName()) ? "on every " + ((PsiMethod) element).getName() + "() call" : null;
+            }
+            if (element instanceof PsiLambdaExpression || element instanceof PsiClass || element instanceof PsiField) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the chain can become the initializer of a static field of its class: it captures nothing
+     * from its context, its type has no type parameters and the class can declare static fields.
+     */
+    static boolean canHoist(@NotNull PsiExpression chain) {
+        PsiClass targetClass = PsiTreeUtil.getParentOfType(chain, PsiClass.class);
+        if (targetClass == null || targetClass.isInterface() || PsiUtil.isLocalOrAnonymousClass(targetClass)
+                || targetClass.getContainingClass() != null && !targetClass.hasModifierProperty(PsiModifier.STATIC)) {
+            return false;
+        }
+        if (!(chain.getType() instanceof PsiClassType) || mentionsTypeParameter(chain.getType())) {
+            return false;
+        }
+        boolean[] captures = new boolean[1];
+        chain.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitThisExpression(PsiThisExpression expression) {
+                captures[0] = true;
+            }
+
+            @Override
+            public void visitSuperExpression(PsiSuperExpression expression) {
+                captures[0] = true;
+            }
+
+            @Override
+            public void visitReferenceExpression(PsiReferenceExpression expression) {
+                super.visitReferenceExpression(expression);
+                if (expression.getQualifierExpression() != null) {
+                    return;
+                }
+                PsiElement resolved = expression.resolve();
+                if (resolved instanceof PsiVariable && !(resolved instanceof PsiField) && !PsiTreeUtil.isAncestor(chain, resolved, false)
+                        || resolved instanceof PsiMember && !(resolved instanceof PsiClass) && !((PsiMember) resolved).hasModifierProperty(PsiModifier.STATIC)) {
+                    captures[0] = true;
+                }
+            }
+
+            @Override
+            public void visitMethodReferenceExpression(PsiMethodReferenceExpression expression) {
+                PsiExpression qualifier = expression.getQualifierExpression();
+                if (qualifier != null && !(qualifier instanceof PsiReferenceExpression && ((PsiReferenceExpression) qualifier).resolve() instanceof PsiClass)) {
+                    captures[0] = true;
+                }
+            }
+        });
+        return !captures[0];
+    }
+
+    private static boolean mentionsTypeParameter(@NotNull PsiType type) {
+        if (!(type instanceof PsiClassType)) {
+            return type instanceof PsiWildcardType && ((PsiWildcardType) type).getBound() != null && mentionsTypeParameter(((PsiWildcardType) type).getBound())
+                    || type instanceof PsiArrayType && mentionsTypeParameter(type.getDeepComponentType());
+        }
+        PsiClassType classType = (PsiClassType) type;
+        if (classType.resolve() instanceof PsiTypeParameter) {
+            return true;
+        }
+        for (PsiType parameter : classType.getParameters()) {
+            if (mentionsTypeParameter(parameter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class UsePrimitiveComparingFix implements LocalQuickFix {
+        private final String methodName;
+
+        UsePrimitiveComparingFix(@NotNull String methodName) {
+            this.methodName = methodName;
+        }
+
+        @NotNull
+        @Override
+        public String getName() {
+            return "Replace with " + methodName + "()";
+        }
+
+        @NotNull
+        @Override
+        public String getFamilyName() {
+            return "Replace with the primitive specialization";
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiElement nameElement = descriptor.getPsiElement();
+            if (nameElement instanceof PsiIdentifier) {
+                nameElement.replace(JavaPsiFacade.getElementFactory(project).createIdentifier(methodName));
+            }
+        }
+    }
+
+    private static class HoistComparatorFix implements LocalQuickFix {
+        @NotNull
+        @Override
+        public String getFamilyName() {
+            return "Move comparator to a static final constant";
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiElement element = descriptor.getPsiElement();
+            if (!(element instanceof PsiExpression) || !canHoist((PsiExpression) element)) {
+                return;
+            }
+            PsiExpression chain = (PsiExpression) element;
+            PsiClass targetClass = Objects.requireNonNull(PsiTreeUtil.getParentOfType(chain, PsiClass.class));
+            String name = CompareToStyle.getConstantName(targetClass);
+
+            PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+            PsiField constant = factory.createFieldFromText("private static final " + Objects.requireNonNull(chain.getType()).getCanonicalText()
+                    + " " + name + " = " + chain.getText() + ";", targetClass);
+            PsiField[] fields = targetClass.getFields();
+            PsiElement added = fields.length == 0
+                    ? targetClass.addBefore(constant, targetClass.getLBrace() == null ? null : targetClass.getLBrace().getNextSibling())
+                    : targetClass.addAfter(constant, fields[fields.length - 1]);
+            JavaCodeStyleManager.getInstance(project).shortenClassReferences(added);
+            chain.replace(factory.createExpressionFromText(name, chain));
+        }
+    }
+}
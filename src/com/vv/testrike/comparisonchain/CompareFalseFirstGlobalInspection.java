@@ -0,0 +1,96 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.codeInspection.*;
+import com.intellij.codeInspection.reference.RefElement;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.cache.CacheManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.search.UsageSearchContext;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The batch mode of {@link CompareFalseFirstInspection}. Only the files whose code contains both the words
+ * {@code ComparisonChain} and {@code compare} are parsed, as told by the word index.
+ */
+public class CompareFalseFirstGlobalInspection extends GlobalInspectionTool {
+
+    @NotNull
+    @Override
+    public String getShortName() {
+        return "CompareFalseFirst";
+    }
+
+    @Nullable
+    @Override
+    public LocalInspectionTool getSharedLocalInspectionTool() {
+        return new CompareFalseFirstInspection();
+    }
+
+    @Override
+    public boolean isGraphNeeded() {
+        return false;
+    }
+
+    @Override
+    public void runInspection(@NotNull AnalysisScope scope, @NotNull InspectionManager manager,
+                              @NotNull GlobalInspectionContext globalContext,
+                              @NotNull ProblemDescriptionsProcessor problemDescriptionsProcessor) {
+        Project project = manager.getProject();
+        PsiManager psiManager = PsiManager.getInstance(project);
+        for (VirtualFile file : findCandidateFiles(project, scope)) {
+            ProgressManager.checkCanceled();
+            PsiFile psiFile = psiManager.findFile(file);
+            if (psiFile == null) {
+                continue;
+            }
+            for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(psiFile, PsiMethodCallExpression.class)) {
+                if (BooleanCompareCalls.findCall(call.getMethodExpression()) != null) {
+                    report(call, manager, globalContext, problemDescriptionsProcessor);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private static Set<VirtualFile> findCandidateFiles(@NotNull Project project, @NotNull AnalysisScope scope) {
+        SearchScope searchScope = scope.toSearchScope();
+        GlobalSearchScope globalSearchScope = searchScope instanceof GlobalSearchScope
+                ? (GlobalSearchScope) searchScope : GlobalSearchScope.projectScope(project);
+        GlobalSearchScope javaScope = GlobalSearchScope.getScopeRestrictedByFileTypes(globalSearchScope, JavaFileType.INSTANCE);
+
+        CacheManager cacheManager = CacheManager.SERVICE.getInstance(project);
+        Set<VirtualFile> candidates = new LinkedHashSet<>(Arrays.asList(
+                cacheManager.getVirtualFilesWithWord("ComparisonChain", UsageSearchContext.IN_CODE, javaScope, true)));
+        candidates.retainAll(new HashSet<>(Arrays.asList(
+                cacheManager.getVirtualFilesWithWord("compare", UsageSearchContext.IN_CODE, javaScope, true))));
+        candidates.removeIf(file -> !scope.contains(file));
+        return candidates;
+    }
+
+    private static void report(@NotNull PsiMethodCallExpression call, @NotNull InspectionManager manager,
+                               @NotNull GlobalInspectionContext globalContext,
+                               @NotNull ProblemDescriptionsProcessor problemDescriptionsProcessor) {
+        PsiElement nameElement = call.getMethodExpression().getReferenceNameElement();
+        PsiMember member = PsiTreeUtil.getParentOfType(call, PsiMember.class);
+        RefElement refElement = member == null ? null : globalContext.getRefManager().getReference(member);
+        if (nameElement == null || refElement == null) {
+            return;
+        }
+        problemDescriptionsProcessor.addProblemElement(refElement, manager.createProblemDescriptor(nameElement,
+                CompareFalseFirstInspection.DESCRIPTION, new CompareFalseFirstInspection.CompareFalseFirstFix(),
+                ProblemHighlightType.GENERIC_ERROR_OR_WARNING, false));
+    }
+}
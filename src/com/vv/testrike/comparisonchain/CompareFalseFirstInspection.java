@@ -0,0 +1,88 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.codeInspection.*;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reports {@code ComparisonChain.compare(boolean, boolean)}, which is deprecated in favour of
+ * {@code compareFalseFirst()}. The fix replaces the calls of all the selected problems in one write action.
+ */
+public class CompareFalseFirstInspection extends LocalInspectionTool {
+
+    static final String DESCRIPTION = "#ref() of booleans can be replaced with compareFalseFirst()";
+
+    @NotNull
+    @Override
+    public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly, @NotNull LocalInspectionToolSession session) {
+        return new MyVisitor(holder);
+    }
+
+    private static class MyVisitor extends JavaElementVisitor {
+        private final ProblemsHolder myHolder;
+
+        public MyVisitor(ProblemsHolder holder) {
+            myHolder = holder;
+        }
+
+        @Override
+        public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+            super.visitMethodCallExpression(expression);
+            PsiMethodCallExpression call = BooleanCompareCalls.findCall(expression.getMethodExpression());
+            PsiElement nameElement = expression.getMethodExpression().getReferenceNameElement();
+            if (call != null && nameElement != null) {
+                myHolder.registerProblem(nameElement, DESCRIPTION, new CompareFalseFirstFix());
+            }
+        }
+    }
+
+    static class CompareFalseFirstFix implements LocalQuickFix, BatchQuickFix<CommonProblemDescriptor> {
+        @NotNull
+        @Override
+        public String getFamilyName() {
+            return "Replace with compareFalseFirst()";
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+            PsiMethodCallExpression call = PsiTreeUtil.getParentOfType(descriptor.getPsiElement(), PsiMethodCallExpression.class);
+            if (call != null) {
+                BooleanCompareCalls.replace(project, call);
+            }
+        }
+
+        @Override
+        public void applyFix(@NotNull Project project, @NotNull CommonProblemDescriptor[] descriptors,
+                             @NotNull List<PsiElement> psiElementsToIgnore, @NotNull Runnable refreshViews) {
+            List<PsiMethodCallExpression> calls = new ArrayList<>();
+            Set<PsiFile> files = new LinkedHashSet<>();
+            for (CommonProblemDescriptor descriptor : descriptors) {
+                PsiElement element = descriptor instanceof ProblemDescriptor ? ((ProblemDescriptor) descriptor).getPsiElement() : null;
+                PsiMethodCallExpression call = PsiTreeUtil.getParentOfType(element, PsiMethodCallExpression.class);
+                if (call != null) {
+                    calls.add(call);
+                    files.add(call.getContainingFile());
+                }
+            }
+            if (calls.isEmpty()) {
+                return;
+            }
+            WriteCommandAction.runWriteCommandAction(project, getFamilyName(), null, () -> {
+                for (PsiMethodCallExpression call : calls) {
+                    if (call.isValid()) {
+                        BooleanCompareCalls.replace(project, call);
+                    }
+                }
+            }, files.toArray(PsiFile.EMPTY_ARRAY));
+            refreshViews.run();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiPrimitiveType;
+import com.intellij.psi.PsiType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The forms of the generated compareTo() method. Each style renders the texts of the members it adds
+ * to the class, the fields first, with fully qualified class references.
+ */
+enum CompareToStyle {
+
+    /**
+     * {@code ComparisonChain.start().compare(...).result()}, which needs Guava and boxes the primitive fields.
+     */
+    COMPARISON_CHAIN("Guava ComparisonChain") {
+        @NotNull
+        @Override
+        List<String> renderMembers(@NotNull PsiClass psiClass, @NotNull List<PsiField> fields) {
+            StringBuilder builder = new StringBuilder();
+            builder.append("public int compareTo(").append(psiClass.getName()).append(" that) {\n")
+                    .append("return " + GenerateAction.COM_GOOGLE_COMMON_COLLECT_COMPARISON_CHAIN + ".start()\n");
+            for (PsiField field : fields) {
+                builder.append(".compare(this.").append(field.getName()).append(", that.").append(field.getName()).append(")\n");
+            }
+            builder.append(".result();\n}");
+            return Collections.singletonList(builder.toString());
+        }
+    },
+
+    /**
+     * A static {@code Comparator} built once with {@code comparingInt}, {@code comparingLong} and
+     * {@code comparingDouble} for the primitive fields, which compareTo() delegates to.
+     */
+    COMPARATOR_CONSTANT("Comparator constant") {
+        @NotNull
+        @Override
+        List<String> renderMembers(@NotNull PsiClass psiClass, @NotNull List<PsiField> fields) {
+            String className = psiClass.getName();
+            String constantName = getConstantName(psiClass);
+            StringBuilder builder = new StringBuilder();
+            builder.append("private static final java.util.Comparator<").append(className).append("> ").append(constantName).append(" =\n")
+                    .append("java.util.Comparator.");
+            for (int i = 0; i < fields.size(); i++) {
+                PsiField field = fields.get(i);
+                String method = getComparingMethod(field.getType());
+                if (i == 0) {
+                    builder.append(method).append("((").append(className).append(" o) -> o.").append(field.getName()).append(")");
+                } else {
+                    builder.append("\n.then").append(Character.toUpperCase(method.charAt(0))).append(method.substring(1))
+                            .append("(o -> o.").append(field.getName()).append(")");
+                }
+            }
+            builder.append(";");
+
+            String compareTo = "public int compareTo(" + className + " that) {\n" +
+                    "return " + constantName + ".compare(this, that);\n}";
+            List<String> members = new ArrayList<>();
+            members.add(builder.toString());
+            members.add(compareTo);
+            return members;
+        }
+    },
+
+    /**
+     * A body of {@code Integer.compare}, {@code Boolean.compare} and similar calls which returns at the first
+     * difference. It allocates nothing and needs no library.
+     */
+    HAND_WRITTEN("Hand-written") {
+        @NotNull
+        @Override
+        List<String> renderMembers(@NotNull PsiClass psiClass, @NotNull List<PsiField> fields) {
+            StringBuilder builder = new StringBuilder();
+            builder.append("public int compareTo(").append(psiClass.getName()).append(" that) {\n");
+            for (int i = 0; i < fields.size(); i++) {
+                String comparison = getComparison(fields.get(i));
+                if (i == fields.size() - 1) {
+                    builder.append("return ").append(comparison).append(";\n");
+                } else {
+                    builder.append(i == 0 ? "int " : "").append("result = ").append(comparison).append(";\n")
+                            .append("if (result != 0) {\nreturn result;\n}\n");
+                }
+            }
+            return Collections.singletonList(builder.append("}").toString());
+        }
+    };
+
+    static final String COMPARATOR_NAME = "COMPARATOR";
+
+    private final String presentableName;
+
+    CompareToStyle(@NotNull String presentableName) {
+        this.presentableName = presentableName;
+    }
+
+    /**
+     * @param fields the compared fields, at least one
+     */
+    @NotNull
+    abstract List<String> renderMembers(@NotNull PsiClass psiClass, @NotNull List<PsiField> fields);
+
+    /**
+     * The fields in the order they are compared: the primitive fields, which are the cheapest to compare,
+     * before the others if {@code primitivesFirst}, otherwise in the given order.
+     */
+    @NotNull
+    static List<PsiField> order(@NotNull List<PsiField> fields, boolean primitivesFirst) {
+        if (!primitivesFirst) {
+            return fields;
+        }
+        List<PsiField> result = new ArrayList<>(fields.size());
+        for (PsiField field : fields) {
+            if (field.getType() instanceof PsiPrimitiveType) {
+                result.add(field);
+            }
+        }
+        for (PsiField field : fields) {
+            if (!(field.getType() instanceof PsiPrimitiveType)) {
+                result.add(field);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The name of a new comparator constant of the class which does not clash with its own fields.
+     */
+    @NotNull
+    static String getConstantName(@NotNull PsiClass psiClass) {
+        String name = COMPARATOR_NAME;
+        for (int i = 2; psiClass.findFieldByName(name, false) != null; i++) {
+            name = COMPARATOR_NAME + i;
+        }
+        return name;
+    }
+
+    @NotNull
+    private static String getComparingMethod(@NotNull PsiType type) {
+        if (PsiType.INT.equals(type) || PsiType.SHORT.equals(type) || PsiType.BYTE.equals(type) || PsiType.CHAR.equals(type)) {
+            return "comparingInt";
+        } else if (PsiType.LONG.equals(type)) {
+            return "comparingLong";
+        } else if (PsiType.DOUBLE.equals(type) || PsiType.FLOAT.equals(type)) {
+            return "comparingDouble";
+        }
+        return "comparing";
+    }
+
+    @NotNull
+    private static String getComparison(@NotNull PsiField field) {
+        String name = field.getName();
+        PsiType type = field.getType();
+        if (type instanceof PsiPrimitiveType) {
+            String boxedName = ((PsiPrimitiveType) type).getBoxedTypeName();
+            String simpleName = boxedName.substring(boxedName.lastIndexOf('.') + 1);
+            return simpleName + ".compare(this." + name + ", that." + name + ")";
+        }
+        return "this." + name + ".compareTo(that." + name + ")";
+    }
+
+    @Override
+    public String toString() {
+        return presentableName;
+    }
+}
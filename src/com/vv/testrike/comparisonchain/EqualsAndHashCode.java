@@ -0,0 +1,141 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders equals() and hashCode() over the same fields as the generated compareTo(), so the three stay
+ * consistent. equals() checks the identity first and compares the primitive fields before the others.
+ * When all the fields are final, hashCode() is computed once and cached in a field, the way
+ * {@code String.hashCode()} is: a racy write of an int is harmless because every thread computes the same value.
+ */
+final class EqualsAndHashCode {
+
+    static final String CACHE_FIELD_NAME = "cachedHashCode";
+
+    private EqualsAndHashCode() {
+    }
+
+    /**
+     * The texts of the members to add, with fully qualified class references. A method the class already
+     * declares is not rendered again.
+     *
+     * @param fields the compared fields, at least one
+     */
+    @NotNull
+    static List<String> renderMembers(@NotNull PsiClass psiClass, @NotNull List<PsiField> fields) {
+        List<PsiField> ordered = CompareToStyle.order(fields, true);
+        List<String> members = new ArrayList<>();
+        if (findMethod(psiClass, "equals", 1) == null) {
+            members.add(renderEquals(psiClass, ordered));
+        }
+        if (findMethod(psiClass, "hashCode", 0) == null) {
+            if (areAllFinal(fields)) {
+                String cacheField = getCacheFieldName(psiClass);
+                members.add("private transient int " + cacheField + ";");
+                members.add(renderCachedHashCode(ordered, cacheField));
+            } else {
+                members.add("@java.lang.Override\npublic int hashCode() {\n" + renderHash(ordered, "return ") + "}");
+            }
+        }
+        return members;
+    }
+
+    @NotNull
+    private static String renderEquals(@NotNull PsiClass psiClass, @NotNull List<PsiField> fields) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("@java.lang.Override\npublic boolean equals(java.lang.Object o) {\n")
+                .append("if (this == o) {\nreturn true;\n}\n")
+                .append("if (o == null || getClass() != o.getClass()) {\nreturn false;\n}\n")
+                .append(psiClass.getName()).append(" that = (").append(psiClass.getName()).append(") o;\n")
+                .append("return ");
+        for (int i = 0; i < fields.size(); i++) {
+            builder.append(i == 0 ? "" : "\n&& ").append(getEquality(fields.get(i)));
+        }
+        return builder.append(";\n}").toString();
+    }
+
+    @NotNull
+    private static String renderCachedHashCode(@NotNull List<PsiField> fields, @NotNull String cacheField) {
+        return "@java.lang.Override\npublic int hashCode() {\n" +
+                "int h = " + cacheField + ";\n" +
+                "if (h == 0) {\n" +
+                renderHash(fields, "h = ") +
+                cacheField + " = h;\n" +
+                "}\n" +
+                "return h;\n}";
+    }
+
+    /**
+     * The statements which compute the hash of the fields, the last one starting with {@code target}.
+     */
+    @NotNull
+    private static String renderHash(@NotNull List<PsiField> fields, @NotNull String target) {
+        if (fields.size() == 1) {
+            return target + getHash(fields.get(0)) + ";\n";
+        }
+        StringBuilder builder = new StringBuilder("int result = ").append(getHash(fields.get(0))).append(";\n");
+        for (int i = 1; i < fields.size(); i++) {
+            builder.append("result = 31 * result + ").append(getHash(fields.get(i))).append(";\n");
+        }
+        return builder.append(target).append("result;\n").toString();
+    }
+
+    @NotNull
+    private static String getEquality(@NotNull PsiField field) {
+        String name = field.getName();
+        PsiType type = field.getType();
+        if (PsiType.FLOAT.equals(type)) {
+            return "java.lang.Float.compare(this." + name + ", that." + name + ") == 0";
+        } else if (PsiType.DOUBLE.equals(type)) {
+            return "java.lang.Double.compare(this." + name + ", that." + name + ") == 0";
+        } else if (type instanceof PsiPrimitiveType) {
+            return "this." + name + " == that." + name;
+        } else if (type instanceof PsiArrayType) {
+            return "java.util.Arrays.equals(this." + name + ", that." + name + ")";
+        }
+        return "java.util.Objects.equals(this." + name + ", that." + name + ")";
+    }
+
+    @NotNull
+    private static String getHash(@NotNull PsiField field) {
+        String name = field.getName();
+        PsiType type = field.getType();
+        if (type instanceof PsiPrimitiveType) {
+            return ((PsiPrimitiveType) type).getBoxedTypeName() + ".hashCode(this." + name + ")";
+        } else if (type instanceof PsiArrayType) {
+            return "java.util.Arrays.hashCode(this." + name + ")";
+        }
+        return "java.util.Objects.hashCode(this." + name + ")";
+    }
+
+    private static boolean areAllFinal(@NotNull List<PsiField> fields) {
+        for (PsiField field : fields) {
+            if (!field.hasModifierProperty(PsiModifier.FINAL)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private static String getCacheFieldName(@NotNull PsiClass psiClass) {
+        String name = CACHE_FIELD_NAME;
+        for (int i = 2; psiClass.findFieldByName(name, false) != null; i++) {
+            name = CACHE_FIELD_NAME + i;
+        }
+        return name;
+    }
+
+    private static PsiMethod findMethod(@NotNull PsiClass psiClass, @NotNull String name, int parameterCount) {
+        for (PsiMethod method : psiClass.findMethodsByName(name, false)) {
+            if (method.getParameterList().getParametersCount() == parameterCount) {
+                return method;
+            }
+        }
+        return null;
+    }
+}
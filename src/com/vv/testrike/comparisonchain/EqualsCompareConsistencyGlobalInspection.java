@@ -0,0 +1,102 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.codeInspection.*;
+import com.intellij.codeInspection.reference.RefElement;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.vv.testrike.comparisonchain.EqualsCompareConsistencyResults.Inconsistency;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * The batch mode of {@link EqualsCompareConsistencyInspection}. Instead of visiting every file of the scope
+ * it asks {@link ComparableFieldsIndex} for the classes whose equals() may reference a field compareTo()
+ * doesn't, and loads the PSI of those files only. The result of a file is reused by the next run
+ * until the file or the Java structure of the project changes, see {@link EqualsCompareConsistencyResults}.
+ */
+public class EqualsCompareConsistencyGlobalInspection extends GlobalInspectionTool {
+
+    @NotNull
+    @Override
+    public String getShortName() {
+        return "EqualsCompareConsistency";
+    }
+
+    @Nullable
+    @Override
+    public LocalInspectionTool getSharedLocalInspectionTool() {
+        return new EqualsCompareConsistencyInspection();
+    }
+
+    @Override
+    public boolean isGraphNeeded() {
+        return false;
+    }
+
+    @Override
+    public void runInspection(@NotNull AnalysisScope scope, @NotNull InspectionManager manager,
+                              @NotNull GlobalInspectionContext globalContext,
+                              @NotNull ProblemDescriptionsProcessor problemDescriptionsProcessor) {
+        Project project = manager.getProject();
+        PsiManager psiManager = PsiManager.getInstance(project);
+
+        for (VirtualFile file : findCandidateFiles(project, scope)) {
+            ProgressManager.checkCanceled();
+
+            PsiFile psiFile = psiManager.findFile(file);
+            if (psiFile == null) {
+                continue;
+            }
+            for (Inconsistency inconsistency : EqualsCompareConsistencyResults.get(psiFile)) {
+                report(inconsistency, manager, globalContext, problemDescriptionsProcessor);
+            }
+        }
+    }
+
+    @NotNull
+    private static Set<VirtualFile> findCandidateFiles(@NotNull Project project, @NotNull AnalysisScope scope) {
+        SearchScope searchScope = scope.toSearchScope();
+        GlobalSearchScope globalSearchScope = searchScope instanceof GlobalSearchScope
+                ? (GlobalSearchScope) searchScope : GlobalSearchScope.projectScope(project);
+
+        FileBasedIndex index = FileBasedIndex.getInstance();
+        Set<VirtualFile> candidates = new LinkedHashSet<>();
+        for (String className : index.getAllKeys(ComparableFieldsIndex.NAME, project)) {
+            index.processValues(ComparableFieldsIndex.NAME, className, null, (file, fields) -> {
+                if (fields.isInconsistencyCandidate() && scope.contains(file)) {
+                    candidates.add(file);
+                }
+                return true;
+            }, globalSearchScope);
+        }
+        return candidates;
+    }
+
+    private static void report(@NotNull Inconsistency inconsistency, @NotNull InspectionManager manager,
+                               @NotNull GlobalInspectionContext globalContext,
+                               @NotNull ProblemDescriptionsProcessor problemDescriptionsProcessor) {
+        PsiMethod compareTo = inconsistency.compareTo.getElement();
+        if (compareTo == null || compareTo.getNameIdentifier() == null) {
+            return;
+        }
+        RefElement refElement = globalContext.getRefManager().getReference(compareTo);
+        if (refElement == null) {
+            return;
+        }
+
+        CommonProblemDescriptor[] descriptors = inconsistency.missingFields.stream()
+                .map(fieldName -> manager.createProblemDescriptor(compareTo.getNameIdentifier(),
+                        EqualsCompareConsistencyInspection.getDescription(fieldName), (LocalQuickFix) null,
+                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING, false))
+                .toArray(CommonProblemDescriptor[]::new);
+        problemDescriptionsProcessor.addProblemElement(refElement, descriptors);
+    }
+}
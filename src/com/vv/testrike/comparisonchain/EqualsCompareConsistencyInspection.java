@@ -4,11 +4,14 @@ import com.intellij.codeInspection.LocalInspectionTool;
 import com.intellij.codeInspection.LocalInspectionToolSession;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiModificationTracker;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 public class EqualsCompareConsistencyInspection extends LocalInspectionTool {
 
@@ -27,53 +30,134 @@ public class EqualsCompareConsistencyInspection extends LocalInspectionTool {
 
         @Override
         public void visitMethod(PsiMethod method) {
-            if ("compareTo".equals(method.getName()) && isInheritedFrom(method, CommonClassNames.JAVA_LANG_COMPARABLE)) {
-                PsiMethod equals = findEqualsMethod(method.getContainingClass());
-                if (equals != null) {
-                    List<PsiField> equalsFields = findReferencedFields(equals);
-                    List<PsiField> compareToFields = findReferencedFields(method);
-                    for (PsiField equalsField : equalsFields) {
-                        if (!compareToFields.contains(equalsField)) {
-                            myHolder.registerProblem(method.getNameIdentifier(),
-                                    "The compareTo() method does not reference '" + equalsField.getName() + "' which is referenced from equals(); inconsistency may result");
-                            break;
-                        }
-                    }
+            if (!"compareTo".equals(method.getName()) || method.getNameIdentifier() == null) {
+                return;
+            }
+            PsiClass containingClass = method.getContainingClass();
+            if (containingClass == null || !InheritanceUtil.isInheritor(containingClass, CommonClassNames.JAVA_LANG_COMPARABLE)) {
+                return;
+            }
+
+            ReferencedFields referencedFields = getReferencedFields(containingClass);
+            if (!method.equals(referencedFields.compareTo)) {
+                return;
+            }
+            for (PsiField missingField : referencedFields.getMissingFields()) {
+                myHolder.registerProblem(method.getNameIdentifier(), getDescription(missingField.getName()));
+            }
+        }
+    }
+
+    @NotNull
+    static String getDescription(String fieldName) {
+        return "The compareTo() method does not reference '" + fieldName + "' which is referenced from equals(); inconsistency may result";
+    }
+
+    /**
+     * The fields of a class referenced from its equals() and compareTo() methods, cached until the next PSI change.
+     */
+    @NotNull
+    static ReferencedFields getReferencedFields(@NotNull PsiClass psiClass) {
+        return CachedValuesManager.getCachedValue(psiClass, () ->
+                CachedValueProvider.Result.create(new ReferencedFields(psiClass), PsiModificationTracker.MODIFICATION_COUNT));
+    }
+
+    static final class ReferencedFields {
+        final PsiMethod compareTo;
+        final Set<PsiField> equalsFields;
+        final Set<PsiField> compareToFields;
+
+        private ReferencedFields(@NotNull PsiClass psiClass) {
+            compareTo = findCompareToMethod(psiClass);
+            PsiMethod equals = compareTo == null ? null : findEqualsMethod(psiClass);
+            if (equals == null) {
+                equalsFields = Collections.emptySet();
+                compareToFields = Collections.emptySet();
+            } else {
+                Set<String> fieldNames = new HashSet<>();
+                for (PsiField field : psiClass.getAllFields()) {
+                    fieldNames.add(field.getName());
                 }
+                equalsFields = findReferencedFields(psiClass, equals, fieldNames, new LinkedHashSet<>());
+                compareToFields = findReferencedFields(psiClass, compareTo, fieldNames, new HashSet<>());
             }
         }
 
-        private List<PsiField> findReferencedFields(PsiMethod psiMethod) {
-            List<PsiField> result = new ArrayList<>();
-            psiMethod.accept(new JavaRecursiveElementVisitor() {
+        /**
+         * The fields referenced from equals() but not from compareTo(), in the order of their references.
+         */
+        @NotNull
+        List<PsiField> getMissingFields() {
+            List<PsiField> missingFields = new ArrayList<>();
+            for (PsiField equalsField : equalsFields) {
+                if (!compareToFields.contains(equalsField)) {
+                    missingFields.add(equalsField);
+                }
+            }
+            return missingFields;
+        }
+    }
+
+    /**
+     * The fields the method references, also through the initializers of the static fields of the class
+     * it references, such as a comparator constant which compareTo() delegates to.
+     */
+    @NotNull
+    private static Set<PsiField> findReferencedFields(@NotNull PsiClass psiClass, @NotNull PsiMethod psiMethod,
+                                                      @NotNull Set<String> fieldNames, @NotNull Set<PsiField> result) {
+        Deque<PsiElement> pending = new ArrayDeque<>();
+        pending.add(psiMethod);
+        while (!pending.isEmpty()) {
+            pending.removeFirst().accept(new JavaRecursiveElementWalkingVisitor() {
                 @Override
-                public void visitReferenceElement(PsiJavaCodeReferenceElement reference) {
-                    PsiElement resolved = reference.resolve();
-                    if (resolved instanceof PsiField
-                            && InheritanceUtil.isInheritorOrSelf(psiMethod.getContainingClass(), ((PsiField)resolved).getContainingClass(), true)) {
-                        result.add((PsiField) resolved);
+                public void visitReferenceExpression(PsiReferenceExpression expression) {
+                    super.visitReferenceExpression(expression);
+                    if (!fieldNames.contains(expression.getReferenceName())) {
+                        return;
+                    }
+                    PsiElement resolved = expression.resolve();
+                    if (!(resolved instanceof PsiField)) {
+                        return;
+                    }
+                    PsiField field = (PsiField) resolved;
+                    if (InheritanceUtil.isInheritorOrSelf(psiClass, field.getContainingClass(), true) && result.add(field)
+                            && field.hasModifierProperty(PsiModifier.STATIC) && field.getInitializer() != null
+                            && psiClass.equals(field.getContainingClass())) {
+                        pending.add(field.getInitializer());
                     }
                 }
             });
-            return result;
         }
+        return result;
+    }
 
-        private PsiMethod findEqualsMethod(PsiClass containingClass) {
-            for (PsiMethod equals : containingClass.findMethodsByName("equals", false)) {
-                if (isInheritedFrom(equals, CommonClassNames.JAVA_LANG_OBJECT)) {
-                    return equals;
-                }
+    @Nullable
+    private static PsiMethod findCompareToMethod(@NotNull PsiClass containingClass) {
+        for (PsiMethod compareTo : containingClass.findMethodsByName("compareTo", false)) {
+            if (isInheritedFrom(compareTo, CommonClassNames.JAVA_LANG_COMPARABLE)) {
+                return compareTo;
             }
-            return null;
         }
+        return null;
+    }
 
-        private boolean isInheritedFrom(PsiMethod method, String baseClass) {
-            for (PsiMethod baseMethod : method.findDeepestSuperMethods()) {
-                if (baseClass.equals(baseMethod.getContainingClass().getQualifiedName())) {
-                    return true;
-                }
+    @Nullable
+    private static PsiMethod findEqualsMethod(@NotNull PsiClass containingClass) {
+        for (PsiMethod equals : containingClass.findMethodsByName("equals", false)) {
+            if (isInheritedFrom(equals, CommonClassNames.JAVA_LANG_OBJECT)) {
+                return equals;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isInheritedFrom(PsiMethod method, String baseClass) {
+        for (PsiMethod baseMethod : method.findDeepestSuperMethods()) {
+            PsiClass containingClass = baseMethod.getContainingClass();
+            if (containingClass != null && baseClass.equals(containingClass.getQualifiedName())) {
+                return true;
             }
-            return false;
         }
+        return false;
     }
 }
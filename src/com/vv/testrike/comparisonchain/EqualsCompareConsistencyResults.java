@@ -0,0 +1,58 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.vv.testrike.comparisonchain.EqualsCompareConsistencyInspection.ReferencedFields;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The inconsistencies found by the batch runs of the compareTo()/equals() check, cached on each file.
+ * A result is reused until its file changes or the Java structure of the project does, such as the supertypes
+ * and static comparator fields of other files the check follows, and it goes away with its file. Edits inside
+ * the code blocks of other files are not seen until then.
+ */
+class EqualsCompareConsistencyResults {
+
+    private EqualsCompareConsistencyResults() {
+    }
+
+    @NotNull
+    static List<Inconsistency> get(@NotNull PsiFile psiFile) {
+        return CachedValuesManager.getCachedValue(psiFile, () ->
+                CachedValueProvider.Result.create(findInconsistencies(psiFile),
+                        psiFile, PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT));
+    }
+
+    @NotNull
+    private static List<Inconsistency> findInconsistencies(@NotNull PsiFile psiFile) {
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(psiFile.getProject());
+        List<Inconsistency> inconsistencies = new ArrayList<>();
+        for (PsiClass psiClass : PsiTreeUtil.findChildrenOfType(psiFile, PsiClass.class)) {
+            ReferencedFields referencedFields = EqualsCompareConsistencyInspection.getReferencedFields(psiClass);
+            List<PsiField> missingFields = referencedFields.getMissingFields();
+            if (!missingFields.isEmpty()) {
+                inconsistencies.add(new Inconsistency(pointerManager.createSmartPsiElementPointer(referencedFields.compareTo),
+                        missingFields.stream().map(PsiField::getName).collect(Collectors.toList())));
+            }
+        }
+        return Collections.unmodifiableList(inconsistencies);
+    }
+
+    static final class Inconsistency {
+        final SmartPsiElementPointer<PsiMethod> compareTo;
+        final List<String> missingFields;
+
+        Inconsistency(@NotNull SmartPsiElementPointer<PsiMethod> compareTo, @NotNull List<String> missingFields) {
+            this.compareTo = compareTo;
+            this.missingFields = Collections.unmodifiableList(missingFields);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A field offered by the {@link GenerateDialog}. It keeps the texts the list shows and filters by,
+ * and only a smart pointer to the field, so the dialog does not hold on to PSI which may become invalid.
+ */
+final class FieldItem {
+    private final SmartPsiElementPointer<PsiField> field;
+    private final String name;
+    private final String type;
+    private final String declaringClass;
+
+    /**
+     * Must be called inside a read action.
+     */
+    FieldItem(@NotNull PsiField field) {
+        this.field = SmartPointerManager.getInstance(field.getProject()).createSmartPsiElementPointer(field);
+        this.name = field.getName();
+        this.type = field.getType().getPresentableText();
+        PsiClass containingClass = field.getContainingClass();
+        this.declaringClass = containingClass == null || containingClass.getName() == null ? "" : containingClass.getName();
+    }
+
+    @Nullable
+    PsiField getField() {
+        return field.getElement();
+    }
+
+    @NotNull
+    String getName() {
+        return name;
+    }
+
+    @NotNull
+    String getType() {
+        return type;
+    }
+
+    @NotNull
+    String getDeclaringClass() {
+        return declaringClass;
+    }
+
+    /**
+     * Whether the declaring class or the type contains the filter, ignoring case.
+     */
+    boolean matches(@NotNull String filter) {
+        String lowerCaseFilter = filter.toLowerCase();
+        return declaringClass.toLowerCase().contains(lowerCaseFilter) || type.toLowerCase().contains(lowerCaseFilter);
+    }
+
+    /**
+     * The name, which is what the speed search of the list matches.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -6,9 +6,13 @@ import com.intellij.openapi.actionSystem.LangDataKeys;
 import com.intellij.openapi.actionSystem.PlatformDataKeys;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
 import com.intellij.psi.*;
 import com.intellij.psi.codeStyle.JavaCodeStyleManager;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.vv.testrike.statistics.GenerationRun;
+import com.vv.testrike.statistics.GenerationStatistics;
 
 import java.util.List;
 
@@ -22,51 +26,89 @@ public class GenerateAction extends AnAction {
         dlg.show();
         if (dlg.isOK()) {
             if (dlg.getFields() != null && !dlg.getFields().isEmpty()) {
-                generateComparable(psiClass, dlg.getFields());
+                generateComparable(psiClass, dlg.getFields(), dlg.getStyle(), dlg.isPrimitivesFirst(), dlg.isEqualsAndHashCode());
             }
         }
     }
 
     public void generateComparable(PsiClass psiClass, List<PsiField> fields) {
-        new WriteCommandAction.Simple(psiClass.getProject(), psiClass.getContainingFile()) {
+        generateComparable(psiClass, fields, CompareToStyle.COMPARISON_CHAIN, false, false);
+    }
 
-            @Override
-            protected void run() throws Throwable {
-                generateCompareTo(psiClass, fields);
-                generateImplementsComparable(psiClass);
-            }
-        }.execute();
+    /**
+     * @param primitivesFirst whether the primitive fields are compared before the others
+     * @param equalsAndHashCode whether equals() and hashCode() of the same fields are generated too
+     */
+    void generateComparable(PsiClass psiClass, List<PsiField> fields, CompareToStyle style, boolean primitivesFirst,
+                            boolean equalsAndHashCode) {
+        GenerationRun run = new GenerationRun("compareTo " + style.name().toLowerCase().replace('_', ' '));
+        run.count(GenerationRun.CLASSES, 1);
+        try {
+            new WriteCommandAction.Simple(psiClass.getProject(), psiClass.getContainingFile()) {
+
+                @Override
+                protected void run() throws Throwable {
+                    List<PsiField> orderedFields = CompareToStyle.order(fields, primitivesFirst);
+                    addMembers(psiClass, run.time("render", () -> style.renderMembers(psiClass, orderedFields)), run);
+                    if (equalsAndHashCode) {
+                        addMembers(psiClass, run.time("render", () -> EqualsAndHashCode.renderMembers(psiClass, fields)), run);
+                    }
+                    generateImplementsComparable(psiClass, run);
+                }
+            }.execute();
+        } finally {
+            GenerationStatistics.getInstance(psiClass.getProject()).finish(run);
+        }
     }
 
-    private void generateImplementsComparable(PsiClass psiClass) {
+    private void generateImplementsComparable(PsiClass psiClass, GenerationRun run) {
         PsiClassType[] implementsListTypes = psiClass.getImplementsListTypes();
         for (PsiClassType implementsListType : implementsListTypes) {
-            PsiClass resolved = implementsListType.resolve();
+            PsiClass resolved = run.time("resolve", implementsListType::resolve);
+            run.count(GenerationRun.RESOLVES, 1);
             if (resolved != null && "java.lang.Comparable".equals(resolved.getQualifiedName())) {
                 return;
             }
         }
 
         String implementsType = "Comparable<" + psiClass.getName() + ">";
-        PsiJavaCodeReferenceElement referenceElement = JavaPsiFacade.getElementFactory(psiClass.getProject()).createReferenceFromText(implementsType, psiClass);
-        psiClass.getImplementsList().add(referenceElement);
+        PsiJavaCodeReferenceElement referenceElement = run.time("parse", () ->
+                JavaPsiFacade.getElementFactory(psiClass.getProject()).createReferenceFromText(implementsType, psiClass));
+        run.time("add", () -> psiClass.getImplementsList().add(referenceElement));
+        run.count(GenerationRun.ELEMENTS_ADDED, 1);
     }
 
-    private void generateCompareTo(PsiClass psiClass, List<PsiField> fields) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("public int compareTo(").append(psiClass.getName()).append(" that) {\n")
-                .append("return " + COM_GOOGLE_COMMON_COLLECT_COMPARISON_CHAIN + ".start()\n");
-        for (PsiField field : fields) {
-            builder.append(".compare(this.").append(field.getName()).append(", that.").append(field.getName()).append(")\n");
+    /**
+     * Adds the rendered methods at the end of the class and the rendered fields after its last field.
+     */
+    private void addMembers(PsiClass psiClass, List<String> members, GenerationRun run) {
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(psiClass.getProject());
+        JavaCodeStyleManager javaCodeStyleManager = JavaCodeStyleManager.getInstance(psiClass.getProject());
+        for (String member : members) {
+            PsiElement added;
+            if (member.endsWith("}")) {
+                PsiMethod method = run.time("parse", () -> factory.createMethodFromText(member, psiClass));
+                added = run.time("add", () -> psiClass.add(method));
+                run.count(GenerationRun.METHODS, 1);
+            } else {
+                PsiField field = run.time("parse", () -> factory.createFieldFromText(member, psiClass));
+                PsiField[] existingFields = psiClass.getFields();
+                added = run.time("add", () -> existingFields.length == 0
+                        ? psiClass.add(field) : psiClass.addAfter(field, existingFields[existingFields.length - 1]));
+            }
+            run.time("shortenReferences", () -> javaCodeStyleManager.shortenClassReferences(added));
+            run.count(GenerationRun.ELEMENTS_ADDED, 1);
         }
-        builder.append(".result();\n}");
-        PsiMethod compareTo = JavaPsiFacade.getElementFactory(psiClass.getProject()).createMethodFromText(builder.toString(), psiClass);
-        PsiElement method = psiClass.add(compareTo);
-        JavaCodeStyleManager.getInstance(psiClass.getProject()).shortenClassReferences(method);
     }
 
     @Override
     public void update(AnActionEvent e) {
+        // the dialog resolves the field types, so the action waits for the indexing instead of looking up the class
+        Project project = e.getProject();
+        if (project == null || DumbService.isDumb(project)) {
+            e.getPresentation().setEnabled(false);
+            return;
+        }
         PsiClass psiClass = getPsiClassFromContext(e);
         e.getPresentation().setEnabled(psiClass != null);
     }
@@ -74,7 +116,7 @@ public class GenerateAction extends AnAction {
     private PsiClass getPsiClassFromContext(AnActionEvent e) {
         PsiFile psiFile = e.getData(LangDataKeys.PSI_FILE);
         Editor editor = e.getData(PlatformDataKeys.EDITOR);
-        if (psiFile ==null || editor == null ) {
+        if (!(psiFile instanceof PsiJavaFile) || editor == null) {
             return null;
         }
 
@@ -1,36 +1,169 @@
 package com.vv.testrike.comparisonchain;
 
-import com.intellij.ide.util.DefaultPsiElementCellRenderer;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.ui.ComboBox;
 import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.openapi.ui.LabeledComponent;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiField;
-import com.intellij.ui.CollectionListModel;
-import com.intellij.ui.ToolbarDecorator;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.ui.*;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBList;
+import com.intellij.util.PlatformIcons;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
+/**
+ * Lets the user choose the fields of the generated compareTo(). The dialog opens at once and the fields
+ * of the class and of its super classes are loaded in the background, the own fields first. The list
+ * supports speed search by field name and can be filtered by the declaring class or the type. The chosen
+ * {@link CompareToStyle} and field order are remembered for the next time.
+ */
 public class GenerateDialog extends DialogWrapper {
+    private static final String STYLE_KEY = "testrike.compareTo.style";
+    private static final String PRIMITIVES_FIRST_KEY = "testrike.compareTo.primitivesFirst";
+    private static final String EQUALS_AND_HASH_CODE_KEY = "testrike.compareTo.equalsAndHashCode";
+
     private final LabeledComponent<JPanel> component;
-    private final JBList<PsiField> fieldList;
+    private final JBList<FieldItem> fieldList;
+    private final CollectionListModel<FieldItem> fields = new CollectionListModel<>();
+    private final List<FieldItem> allFields = new ArrayList<>();
+    private final SearchTextField filter = new SearchTextField(false);
+    private final ComboBox<CompareToStyle> style = new ComboBox<>(CompareToStyle.values());
+    private final JBCheckBox primitivesFirst = new JBCheckBox("Compare primitive fields first");
+    private final JBCheckBox equalsAndHashCode = new JBCheckBox("Generate equals() and hashCode()");
 
     GenerateDialog(PsiClass psiClass) {
         super(psiClass.getProject());
         setTitle("Select Fields for Comparision Chain");
 
-        CollectionListModel<PsiField> fields = new CollectionListModel<PsiField>(psiClass.getAllFields());
         fieldList = new JBList<>(fields);
-        fieldList.setCellRenderer(new DefaultPsiElementCellRenderer());
+        fieldList.setCellRenderer(new FieldItemRenderer());
+        fieldList.setPaintBusy(true);
+        new ListSpeedSearch<>(fieldList);
         ToolbarDecorator decorator = ToolbarDecorator.createDecorator(fieldList);
         decorator.disableAddAction();
         decorator.disableRemoveAction();
-        JPanel panel = decorator.createPanel();
+
+        filter.getTextEditor().getEmptyText().setText("Filter by declaring class or type");
+        filter.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(DocumentEvent e) {
+                applyFilter();
+            }
+        });
+        PropertiesComponent properties = PropertiesComponent.getInstance();
+        style.setSelectedItem(getStoredStyle(properties));
+        primitivesFirst.setSelected(properties.getBoolean(PRIMITIVES_FIRST_KEY, true));
+        equalsAndHashCode.setSelected(properties.getBoolean(EQUALS_AND_HASH_CODE_KEY, false));
+        JPanel options = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        options.add(new JBLabel("Style: "));
+        options.add(style);
+        options.add(Box.createHorizontalStrut(12));
+        options.add(primitivesFirst);
+        options.add(Box.createHorizontalStrut(12));
+        options.add(equalsAndHashCode);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(filter, BorderLayout.NORTH);
+        panel.add(decorator.createPanel(), BorderLayout.CENTER);
+        panel.add(options, BorderLayout.SOUTH);
         component = LabeledComponent.create(panel, "Fields to include in compareTo():");
 
         init();
+        loadFields(SmartPointerManager.getInstance(psiClass.getProject()).createSmartPsiElementPointer(psiClass));
+    }
+
+    /**
+     * Loads the fields class by class in read actions which give way to write actions,
+     * and stops when the dialog is closed.
+     */
+    private void loadFields(@NotNull SmartPsiElementPointer<PsiClass> classPointer) {
+        ProgressIndicator indicator = new ProgressIndicatorBase();
+        Disposer.register(getDisposable(), indicator::cancel);
+        ModalityState modalityState = ModalityState.stateForComponent(getContentPane());
+
+        ApplicationManager.getApplication().executeOnPooledThread(() -> ProgressManager.getInstance().runProcess(() -> {
+            List<PsiClass> classes = new ArrayList<>();
+            readAction(indicator, () -> {
+                classes.clear();
+                PsiClass psiClass = classPointer.getElement();
+                if (psiClass != null) {
+                    Set<PsiClass> supers = new LinkedHashSet<>();
+                    InheritanceUtil.getSuperClasses(psiClass, supers, true);
+                    classes.add(psiClass);
+                    classes.addAll(supers);
+                }
+            });
+            for (PsiClass psiClass : classes) {
+                List<FieldItem> items = new ArrayList<>();
+                readAction(indicator, () -> {
+                    items.clear();
+                    if (psiClass.isValid()) {
+                        for (PsiField field : psiClass.getFields()) {
+                            items.add(new FieldItem(field));
+                        }
+                    }
+                });
+                ApplicationManager.getApplication().invokeLater(() -> addFields(items), modalityState, o -> indicator.isCanceled());
+            }
+            ApplicationManager.getApplication().invokeLater(() -> fieldList.setPaintBusy(false), modalityState, o -> indicator.isCanceled());
+        }, indicator));
+    }
+
+    private static void readAction(@NotNull ProgressIndicator indicator, @NotNull Runnable action) {
+        while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(action, indicator)) {
+            indicator.checkCanceled();
+            ProgressIndicatorUtils.yieldToPendingWriteActions();
+        }
+    }
+
+    private void addFields(@NotNull List<FieldItem> items) {
+        allFields.addAll(items);
+        String text = filter.getText().trim();
+        for (FieldItem item : items) {
+            if (text.isEmpty() || item.matches(text)) {
+                fields.add(item);
+            }
+        }
+    }
+
+    private void applyFilter() {
+        List<FieldItem> selected = fieldList.getSelectedValuesList();
+        String text = filter.getText().trim();
+        List<FieldItem> matching = new ArrayList<>();
+        for (FieldItem item : allFields) {
+            if (text.isEmpty() || item.matches(text)) {
+                matching.add(item);
+            }
+        }
+        fields.replaceAll(matching);
+        for (FieldItem item : selected) {
+            int index = fields.getElementIndex(item);
+            if (index >= 0) {
+                fieldList.addSelectionInterval(index, index);
+            }
+        }
     }
 
     @Nullable
@@ -39,7 +172,69 @@ public class GenerateDialog extends DialogWrapper {
         return component;
     }
 
+    @Nullable
+    @Override
+    public JComponent getPreferredFocusedComponent() {
+        return fieldList;
+    }
+
+    @NotNull
+    CompareToStyle getStyle() {
+        return (CompareToStyle) Objects.requireNonNull(style.getSelectedItem());
+    }
+
+    boolean isPrimitivesFirst() {
+        return primitivesFirst.isSelected();
+    }
+
+    /**
+     * Whether equals() and hashCode() of the selected fields are generated too.
+     */
+    boolean isEqualsAndHashCode() {
+        return equalsAndHashCode.isSelected();
+    }
+
+    @Override
+    protected void doOKAction() {
+        PropertiesComponent properties = PropertiesComponent.getInstance();
+        properties.setValue(STYLE_KEY, getStyle().name());
+        properties.setValue(PRIMITIVES_FIRST_KEY, isPrimitivesFirst(), true);
+        properties.setValue(EQUALS_AND_HASH_CODE_KEY, isEqualsAndHashCode(), false);
+        super.doOKAction();
+    }
+
+    @NotNull
+    private static CompareToStyle getStoredStyle(@NotNull PropertiesComponent properties) {
+        String name = properties.getValue(STYLE_KEY, CompareToStyle.COMPARISON_CHAIN.name());
+        for (CompareToStyle compareToStyle : CompareToStyle.values()) {
+            if (compareToStyle.name().equals(name)) {
+                return compareToStyle;
+            }
+        }
+        return CompareToStyle.COMPARISON_CHAIN;
+    }
+
+    /**
+     * The selected fields which are still valid. Must be called on the event dispatch thread.
+     */
     public List<PsiField> getFields() {
-        return fieldList.getSelectedValuesList();
+        List<PsiField> result = new ArrayList<>();
+        for (FieldItem item : fieldList.getSelectedValuesList()) {
+            PsiField field = item.getField();
+            if (field != null) {
+                result.add(field);
+            }
+        }
+        return result;
+    }
+
+    private static final class FieldItemRenderer extends ColoredListCellRenderer<FieldItem> {
+        @Override
+        protected void customizeCellRenderer(@NotNull JList<? extends FieldItem> list, FieldItem item, int index, boolean selected, boolean hasFocus) {
+            setIcon(PlatformIcons.FIELD_ICON);
+            append(item.getName());
+            append(": " + item.getType(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            append("  (" + item.getDeclaringClass() + ")", SimpleTextAttributes.GRAY_ITALIC_ATTRIBUTES);
+        }
     }
 }
@@ -0,0 +1,131 @@
+package com.vv.testrike.generatetest;
+
+import com.vv.testrike.generatetest.TestClassModel.MethodTest;
+import com.vv.testrike.generatetest.TestClassModel.MockField;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Renders a JMH benchmark skeleton from a {@link TestClassModel}: a benchmark state holding the production class
+ * with its dependencies mocked, and a {@code @Benchmark} method of every public method. The arguments are state
+ * fields built once per trial, so a benchmark measures only the call and not the construction of its arguments.
+ * The values returned by the methods are sunk into a {@code Blackhole}, so the calls are not eliminated as dead code.
+ * The stubs of the model are not rendered, their texts refer to variables the benchmark doesn't have.
+ */
+class BenchmarkRenderer {
+
+    private static final String INDENT = "    ";
+    private static final String JMH = "org.openjdk.jmh.annotations.";
+
+    @NotNull
+    String render(@NotNull TestClassModel model) {
+        ImportCollector imports = new ImportCollector(model.getPackageName());
+
+        StringBuilder body = new StringBuilder();
+        body.append("@").append(imports.shorten(JMH + "State")).append("(").append(imports.shorten(JMH + "Scope.Benchmark")).append(")\n")
+                .append("@").append(imports.shorten(JMH + "BenchmarkMode")).append("(").append(imports.shorten(JMH + "Mode.AverageTime")).append(")\n")
+                .append("@").append(imports.shorten(JMH + "OutputTimeUnit")).append("(").append(imports.shorten("java.util.concurrent.TimeUnit.NANOSECONDS")).append(")\n")
+                .append("@").append(imports.shorten(JMH + "Fork")).append("(1)\n")
+                .append("@").append(imports.shorten(JMH + "Warmup")).append("(iterations = 3, time = 1)\n")
+                .append("@").append(imports.shorten(JMH + "Measurement")).append("(iterations = 5, time = 1)\n")
+                .append("public class ").append(model.getTestClassName()).append(" {\n");
+
+        renderField(model.getInjectTarget(), "org.mockito.InjectMocks", imports, body);
+        model.getMockFields().forEach(mockField -> renderField(mockField, "org.mockito.Mock", imports, body));
+
+        Set<String> benchmarkNames = new HashSet<>();
+        Map<String, MethodTest> benchmarks = new LinkedHashMap<>();
+        model.getMethodTests().stream()
+                .filter(MethodTest::isPublicMethod)
+                .forEach(methodTest -> benchmarks.put(uniqueName(methodTest.getMethodName(), benchmarkNames), methodTest));
+        benchmarks.forEach((benchmarkName, methodTest) -> renderArgumentFields(methodTest, benchmarkName, imports, body));
+
+        body.append("\n")
+                .append(INDENT).append("@").append(imports.shorten(JMH + "Setup")).append("(").append(imports.shorten(JMH + "Level.Trial")).append(")\n")
+                .append(INDENT).append("public void setUp() {\n")
+                .append(INDENT).append(INDENT).append(imports.shorten("org.mockito.MockitoAnnotations.initMocks")).append("(this);\n");
+        benchmarks.forEach((benchmarkName, methodTest) -> {
+            List<String> arguments = methodTest.getArguments();
+            for (int i = 0; i < arguments.size(); i++) {
+                body.append(INDENT).append(INDENT).append(getArgumentName(benchmarkName, i)).append(" = ")
+                        .append(imports.shorten(arguments.get(i), methodTest.getClassNames())).append(";\n");
+            }
+        });
+        body.append(INDENT).append("}\n");
+
+        benchmarks.forEach((benchmarkName, methodTest) -> renderBenchmark(model, methodTest, benchmarkName, imports, body));
+        body.append("}\n");
+
+        StringBuilder text = new StringBuilder();
+        if (!model.getPackageName().isEmpty()) {
+            text.append("package ").append(model.getPackageName()).append(";\n\n");
+        }
+        SortedSet<String> importedNames = imports.getImports();
+        importedNames.forEach(qualifiedName -> text.append("import ").append(qualifiedName).append(";\n"));
+        if (!importedNames.isEmpty()) {
+            text.append("\n");
+        }
+        return text.append(body).toString();
+    }
+
+    @NotNull
+    private static String uniqueName(@NotNull String methodName, @NotNull Set<String> benchmarkNames) {
+        String name = methodName;
+        for (int suffix = 2; !benchmarkNames.add(name); suffix++) {
+            name = methodName + suffix;
+        }
+        return name;
+    }
+
+    private static void renderField(@NotNull MockField mockField, @NotNull String annotation, @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        text.append("\n")
+                .append(INDENT).append("@").append(imports.shorten(annotation)).append("\n")
+                .append(INDENT).append(imports.shorten(mockField.getType())).append(" ").append(mockField.getName()).append(";\n");
+    }
+
+    /**
+     * The fields holding the arguments of a benchmark, not final so the JIT cannot fold them into constants.
+     */
+    private static void renderArgumentFields(@NotNull MethodTest methodTest, @NotNull String benchmarkName,
+                                             @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        List<String> parameterTypes = methodTest.getParameterTypes();
+        if (!parameterTypes.isEmpty()) {
+            text.append("\n");
+        }
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            text.append(INDENT).append(imports.shorten(parameterTypes.get(i))).append(" ").append(getArgumentName(benchmarkName, i)).append(";\n");
+        }
+    }
+
+    @NotNull
+    private static String getArgumentName(@NotNull String benchmarkName, int index) {
+        return benchmarkName + "Argument" + (index + 1);
+    }
+
+    private static void renderBenchmark(@NotNull TestClassModel model, @NotNull MethodTest methodTest, @NotNull String benchmarkName,
+                                        @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        String call = model.getInjectTarget().getName() + "." + methodTest.getMethodName() + IntStream.range(0, methodTest.getArguments().size())
+                .mapToObj(i -> getArgumentName(benchmarkName, i))
+                .collect(Collectors.joining(", ", "(", ")"));
+
+        text.append("\n")
+                .append(INDENT).append("@").append(imports.shorten(JMH + "Benchmark")).append("\n");
+        if (methodTest.isReturnsValue()) {
+            text.append(INDENT).append("public void ").append(benchmarkName)
+                    .append("(").append(imports.shorten("org.openjdk.jmh.infra.Blackhole")).append(" blackhole) {\n")
+                    .append(INDENT).append(INDENT).append("blackhole.consume(").append(call).append(");\n");
+        } else {
+            text.append(INDENT).append("public void ").append(benchmarkName).append("() {\n")
+                    .append(INDENT).append(INDENT).append(call).append(";\n");
+        }
+        text.append(INDENT).append("}\n");
+    }
+}
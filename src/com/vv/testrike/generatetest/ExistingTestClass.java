@@ -0,0 +1,104 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiUtil;
+import com.vv.testrike.TestLinkIndex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The members of a test class which already exists for a production class. It is read syntactically,
+ * so summarizing a test class resolves nothing.
+ */
+class ExistingTestClass {
+
+    private final PsiClass testClass;
+    private final String subjectFieldName;
+    private final boolean directConstruction;
+    private final Set<String> fieldNames;
+    private final Set<String> methodNames;
+    private final Set<String> testedCalls = new HashSet<>();
+
+    private ExistingTestClass(@NotNull PsiClass testClass) {
+        this.testClass = testClass;
+        fieldNames = Stream.of(testClass.getFields()).map(PsiField::getName).collect(Collectors.toSet());
+        methodNames = Stream.of(testClass.getMethods()).map(PsiMethod::getName).collect(Collectors.toSet());
+        PsiField subjectField = TestLinkIndex.findSubjectField(testClass);
+        subjectFieldName = subjectField == null ? null : subjectField.getName();
+        directConstruction = subjectField != null && TestLinkIndex.isDirectlyConstructedSubject(testClass, subjectField);
+        if (subjectFieldName != null) {
+            collectTestedCalls(subjectFieldName);
+        }
+    }
+
+    @Nullable
+    static ExistingTestClass find(@NotNull PsiClass psiClass, @NotNull String packageName, @NotNull String testClassName) {
+        Module module = ModuleUtilCore.findModuleForPsiElement(psiClass);
+        if (module == null) {
+            return null;
+        }
+        String qualifiedName = packageName.isEmpty() ? testClassName : packageName + "." + testClassName;
+        PsiClass testClass = JavaPsiFacade.getInstance(psiClass.getProject()).findClass(qualifiedName, GlobalSearchScope.moduleScope(module));
+        return testClass == null || testClass.equals(psiClass) ? null : new ExistingTestClass(testClass);
+    }
+
+    @NotNull
+    PsiClass getTestClass() {
+        return testClass;
+    }
+
+    /**
+     * The name of the field annotated with {@code @InjectMocks} or of the directly constructed subject,
+     * or null if there is none.
+     */
+    @Nullable
+    String getSubjectFieldName() {
+        return subjectFieldName;
+    }
+
+    /**
+     * Whether the test constructs its subject itself from final mock fields, so it needs neither
+     * an {@code @InjectMocks} field nor {@code @Mock} fields.
+     */
+    boolean isDirectConstruction() {
+        return directConstruction;
+    }
+
+    boolean hasField(@NotNull String name) {
+        return fieldNames.contains(name);
+    }
+
+    boolean hasMethod(@NotNull String name) {
+        return methodNames.contains(name);
+    }
+
+    /**
+     * Whether the test calls a method of the given name and number of parameters on the subject field.
+     * A method whose signature changed has no such call, so it counts as not tested.
+     */
+    boolean isTested(@NotNull String methodName, int parameterCount) {
+        return testedCalls.contains(methodName + "/" + parameterCount);
+    }
+
+    private void collectTestedCalls(@NotNull String subjectName) {
+        testClass.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitMethodCallExpression(PsiMethodCallExpression expression) {
+                super.visitMethodCallExpression(expression);
+                PsiReferenceExpression methodExpression = expression.getMethodExpression();
+                PsiExpression qualifier = PsiUtil.skipParenthesizedExprDown(methodExpression.getQualifierExpression());
+                if (qualifier instanceof PsiReferenceExpression && subjectName.equals(((PsiReferenceExpression) qualifier).getReferenceName())) {
+                    testedCalls.add(methodExpression.getReferenceName() + "/" + expression.getArgumentList().getExpressions().length);
+                }
+            }
+        });
+    }
+}
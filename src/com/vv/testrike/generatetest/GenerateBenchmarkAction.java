@@ -0,0 +1,88 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.util.IncorrectOperationException;
+import com.intellij.util.OpenSourceUtil;
+import com.vv.testrike.statistics.GenerationRun;
+import com.vv.testrike.statistics.GenerationStatistics;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates a JMH benchmark skeleton of the class at the caret into the JMH source root of its module.
+ * The class is analysed like for its test class, with the analyzer of the settings, and the benchmark calls every
+ * public method once per invocation.
+ */
+public class GenerateBenchmarkAction extends AnAction {
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        PsiClass psiClass = GenerateTestAction.getPsiClassFromContext(e);
+        if (psiClass == null)
+            return;
+
+        Project project = e.getData(LangDataKeys.PROJECT);
+        if (project == null)
+            return;
+
+        SmartPsiElementPointer<PsiClass> pointer = SmartPointerManager.getInstance(project).createSmartPsiElementPointer(psiClass);
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Generating Benchmark", true) {
+            private final GenerationRun run = new GenerationRun("benchmark");
+            private PsiClass benchmarkClass;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    TestGenerationEngine engine = TestGenerationEngine.getInstance(myProject);
+                    List<TestClassModel> models = engine.analyzeForBenchmarks(Collections.singletonList(pointer), engine.createAnalyzer(), indicator, run);
+                    if (models.isEmpty())
+                        return;
+
+                    TestClassModel model = models.get(0);
+                    indicator.checkCanceled();
+                    run.time("write", () -> {
+                        ApplicationManager.getApplication().invokeAndWait(() -> WriteCommandAction.runWriteCommandAction(myProject, () -> {
+                            try {
+                                benchmarkClass = engine.applyBenchmark(model, TestDirectories.forBenchmarks(), run);
+                            } catch (IncorrectOperationException ex) {
+                                Notifications.Bus.notify(new Notification("Testrike", "Generate benchmark", ex.getMessage(),
+                                        NotificationType.WARNING), myProject);
+                            }
+                        }));
+                        return null;
+                    });
+                } finally {
+                    GenerationStatistics.getInstance(myProject).finish(run);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (benchmarkClass != null && benchmarkClass.isValid()) {
+                    OpenSourceUtil.navigate(benchmarkClass);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+        e.getPresentation().setEnabled(GenerateTestAction.getPsiClassFromContext(e) != null);
+    }
+}
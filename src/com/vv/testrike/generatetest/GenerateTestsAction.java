@@ -0,0 +1,127 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.model.java.JavaSourceRootType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates test classes for every class below the packages, directories or modules selected in the Project view.
+ * The selection and the classes are found from the directories alone, so it also works during indexing.
+ */
+public class GenerateTestsAction extends AnAction implements DumbAware {
+
+    @Override
+    public void actionPerformed(AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null)
+            return;
+
+        List<PsiDirectory> directories = getSelectedSourceDirectories(e, project);
+        if (directories.isEmpty())
+            return;
+
+        ProgressManager.getInstance().run(new GenerateTestsTask(project, indicator -> collectClasses(project, directories, indicator), false));
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+        Project project = e.getProject();
+        e.getPresentation().setEnabledAndVisible(project != null && !getSelectedSourceDirectories(e, project).isEmpty());
+    }
+
+    @NotNull
+    private static List<PsiDirectory> getSelectedSourceDirectories(@NotNull AnActionEvent e, @NotNull Project project) {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        ProjectFileIndex fileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+        Set<PsiDirectory> result = new LinkedHashSet<>();
+
+        Module[] modules = e.getData(LangDataKeys.MODULE_CONTEXT_ARRAY);
+        if (modules == null && e.getData(LangDataKeys.MODULE_CONTEXT) != null) {
+            modules = new Module[]{e.getData(LangDataKeys.MODULE_CONTEXT)};
+        }
+        if (modules != null) {
+            Stream.of(modules)
+                    .flatMap(module -> ModuleRootManager.getInstance(module).getSourceRoots(JavaSourceRootType.SOURCE).stream())
+                    .map(psiManager::findDirectory)
+                    .filter(directory -> directory != null)
+                    .forEach(result::add);
+            return new ArrayList<>(result);
+        }
+
+        PsiElement[] elements = e.getData(LangDataKeys.PSI_ELEMENT_ARRAY);
+        if (elements == null)
+            return new ArrayList<>(result);
+
+        for (PsiElement element : elements) {
+            if (element instanceof PsiDirectory) {
+                result.add((PsiDirectory) element);
+            } else if (element instanceof PsiPackage) {
+                result.addAll(Stream.of(((PsiPackage) element).getDirectories()).collect(Collectors.toList()));
+            }
+        }
+        result.removeIf(directory -> {
+            VirtualFile virtualFile = directory.getVirtualFile();
+            return !fileIndex.isInSourceContent(virtualFile) || fileIndex.isInTestSourceContent(virtualFile);
+        });
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * The classes below the directories, except interfaces and enums. A directory below another of the directories,
+     * such as a package selected together with its parent, is walked only once. Must be called inside a read action.
+     */
+    @NotNull
+    static List<SmartPsiElementPointer<PsiClass>> collectClasses(@NotNull Project project, @NotNull List<PsiDirectory> directories,
+                                                                         @NotNull ProgressIndicator indicator) {
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+        List<SmartPsiElementPointer<PsiClass>> result = new ArrayList<>();
+        for (PsiDirectory directory : directories) {
+            if (!isBelowAnother(directory, directories)) {
+                collectClasses(directory, result, pointerManager, indicator);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isBelowAnother(@NotNull PsiDirectory directory, @NotNull List<PsiDirectory> directories) {
+        return directories.stream().anyMatch(other -> !other.equals(directory)
+                && VfsUtilCore.isAncestor(other.getVirtualFile(), directory.getVirtualFile(), true));
+    }
+
+    private static void collectClasses(@NotNull PsiDirectory directory, List<SmartPsiElementPointer<PsiClass>> result,
+                                       SmartPointerManager pointerManager, ProgressIndicator indicator) {
+        indicator.checkCanceled();
+        for (PsiFile psiFile : directory.getFiles()) {
+            if (!(psiFile instanceof PsiJavaFile))
+                continue;
+
+            Stream.of(((PsiJavaFile) psiFile).getClasses())
+                    .filter(psiClass -> psiClass.getName() != null && !psiClass.isInterface() && !psiClass.isEnum())
+                    .map(pointerManager::createSmartPsiElementPointer)
+                    .forEach(result::add);
+        }
+        for (PsiDirectory subdirectory : directory.getSubdirectories()) {
+            collectClasses(subdirectory, result, pointerManager, indicator);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarterEx;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiPackage;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.model.java.JavaSourceRootType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates the test classes of a project without a UI, for build agents:
+ * <pre>
+ * idea testrike-generate &lt;project path&gt; [-m module,...] [-p package,...] [-t threads] [-o summary.json]
+ * </pre>
+ * The modules are generated in parallel, each by its own {@link GenerateTestsTask}. Their analysis runs
+ * concurrently while the write chunks are serialized on the event dispatch thread. A JSON summary
+ * with the per-phase times is printed to the standard output, or written to the given file.
+ */
+public class GenerateTestsStarter extends ApplicationStarterEx {
+
+    private static final Logger LOG = Logger.getInstance(GenerateTestsStarter.class);
+
+    private static final String USAGE = "Usage: testrike-generate <project path> [-m module,...] [-p package,...] [-t threads] [-o summary.json]";
+
+    private Arguments arguments;
+
+    @Override
+    public String getCommandName() {
+        return "testrike-generate";
+    }
+
+    @Override
+    public boolean isHeadless() {
+        return true;
+    }
+
+    @Override
+    public void premain(String[] args) {
+        try {
+            arguments = Arguments.parse(Arrays.copyOfRange(args, 1, args.length));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    @Override
+    public void main(String[] args) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            int exitCode;
+            try {
+                exitCode = generate() ? 0 : 1;
+            } catch (Throwable e) {
+                LOG.error(e);
+                exitCode = 1;
+            }
+            System.exit(exitCode);
+        });
+    }
+
+    /**
+     * @return whether every test class was generated
+     */
+    private boolean generate() throws Exception {
+        GenerationSummary summary = new GenerationSummary();
+
+        long start = System.nanoTime();
+        Project project = ProjectUtil.openOrImport(arguments.projectPath, null, false);
+        if (project == null) {
+            throw new IOException("Cannot open the project " + arguments.projectPath);
+        }
+        summary.addPhase("open", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        DumbService.getInstance(project).waitForSmartMode();
+        summary.addPhase("index", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Testrike test generation", arguments.threads);
+        try {
+            Map<Module, Future<GenerateTestsTask>> tasks = new LinkedHashMap<>();
+            for (Module module : ReadAction.compute(() -> getModules(project))) {
+                tasks.put(module, executor.submit(() -> generate(project, module)));
+            }
+            for (Map.Entry<Module, Future<GenerateTestsTask>> task : tasks.entrySet()) {
+                summary.addModule(task.getKey().getName(), task.getValue().get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        summary.addPhase("generate", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        ApplicationManager.getApplication().invokeAndWait(() -> {
+            FileDocumentManager.getInstance().saveAllDocuments();
+            ProjectUtil.closeAndDispose(project);
+        });
+        summary.addPhase("save", System.nanoTime() - start);
+
+        String json = summary.toJson();
+        if (arguments.output == null) {
+            System.out.println(json);
+        } else {
+            FileUtil.writeToFile(new File(arguments.output), json);
+        }
+        return summary.getFailedCount() == 0;
+    }
+
+    @NotNull
+    private GenerateTestsTask generate(@NotNull Project project, @NotNull Module module) {
+        GenerateTestsTask task = new GenerateTestsTask(project, indicator -> {
+            List<PsiDirectory> directories = getSourceDirectories(project, module);
+            return GenerateTestsAction.collectClasses(project, directories, indicator);
+        }, false);
+        EmptyProgressIndicator indicator = new EmptyProgressIndicator();
+        ProgressManager.getInstance().runProcess(() -> task.run(indicator), indicator);
+        return task;
+    }
+
+    @NotNull
+    private List<Module> getModules(@NotNull Project project) {
+        return Stream.of(ModuleManager.getInstance(project).getModules())
+                .filter(module -> arguments.modules.isEmpty() || arguments.modules.contains(module.getName()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The production source roots of the module, or the directories of the selected packages in them.
+     */
+    @NotNull
+    private List<PsiDirectory> getSourceDirectories(@NotNull Project project, @NotNull Module module) {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        if (arguments.packages.isEmpty()) {
+            return ModuleRootManager.getInstance(module).getSourceRoots(JavaSourceRootType.SOURCE).stream()
+                    .map(psiManager::findDirectory)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+
+        ProjectFileIndex fileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+        GlobalSearchScope scope = GlobalSearchScope.moduleScope(module);
+        List<PsiDirectory> result = new ArrayList<>();
+        for (String packageName : arguments.packages) {
+            PsiPackage psiPackage = JavaPsiFacade.getInstance(project).findPackage(packageName);
+            if (psiPackage == null)
+                continue;
+
+            Stream.of(psiPackage.getDirectories(scope))
+                    .filter(directory -> !fileIndex.isInTestSourceContent(directory.getVirtualFile()))
+                    .forEach(result::add);
+        }
+        return result;
+    }
+
+    private static final class Arguments {
+        private String projectPath;
+        private Set<String> modules = Collections.emptySet();
+        private Set<String> packages = Collections.emptySet();
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private String output;
+
+        @NotNull
+        static Arguments parse(@NotNull String[] args) {
+            Arguments arguments = new Arguments();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("-")) {
+                    if (arguments.projectPath != null) {
+                        throw new IllegalArgumentException("Unexpected argument: " + arg);
+                    }
+                    arguments.projectPath = FileUtil.toSystemIndependentName(new File(arg).getAbsolutePath());
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value of " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "-m":
+                        arguments.modules = splitList(value);
+                        break;
+                    case "-p":
+                        arguments.packages = splitList(value);
+                        break;
+                    case "-t":
+                        arguments.threads = parseThreads(value);
+                        break;
+                    case "-o":
+                        arguments.output = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (arguments.projectPath == null) {
+                throw new IllegalArgumentException("Missing project path");
+            }
+            return arguments;
+        }
+
+        @NotNull
+        private static Set<String> splitList(@NotNull String value) {
+            return Stream.of(value.split(","))
+                    .map(String::trim)
+                    .filter(name -> !name.isEmpty())
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+
+        private static int parseThreads(@NotNull String value) {
+            try {
+                int threads = Integer.parseInt(value);
+                if (threads > 0) {
+                    return threads;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            throw new IllegalArgumentException("Invalid number of threads: " + value);
+        }
+    }
+}
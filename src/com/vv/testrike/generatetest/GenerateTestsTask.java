@@ -0,0 +1,239 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.util.IncorrectOperationException;
+import com.intellij.util.OpenSourceUtil;
+import com.vv.testrike.statistics.GenerationRun;
+import com.vv.testrike.statistics.GenerationStatistics;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the test classes of the given production classes with the {@link TestGenerationEngine}, in chunks
+ * of {@link #CHUNK_SIZE} classes. The classes of a chunk are analysed concurrently in background read actions
+ * which give way to write actions, then their models are applied in one short write command action.
+ * A model whose production file or existing test file changed since its analysis is thrown away
+ * and the class is analysed again, up to {@link #MAX_ANALYSIS_ATTEMPTS} times; a class which keeps changing
+ * is reported as failed. The problems the {@link GeneratedTestValidator} could not repair are reported
+ * when the task finishes. The test classes generated from skeletons during indexing are completed
+ * by a {@link SkeletonCompletion} after the indexing, which also generates the members of the classes whose
+ * test class already exists, since those cannot be analysed during indexing.
+ */
+class GenerateTestsTask extends Task.Backgroundable {
+
+    private static final Logger LOG = Logger.getInstance(GenerateTestsTask.class);
+
+    /**
+     * Number of test classes created in one write command action, so the UI stays responsive between the chunks.
+     */
+    static final int CHUNK_SIZE = 20;
+
+    /**
+     * Number of times a class is analysed before it is given up because its files keep changing.
+     */
+    static final int MAX_ANALYSIS_ATTEMPTS = 3;
+
+    /**
+     * Number of unrepaired problems listed in the notification, the rest are only logged.
+     */
+    private static final int MAX_REPORTED_PROBLEMS = 10;
+
+    private final Function<ProgressIndicator, List<SmartPsiElementPointer<PsiClass>>> classesCollector;
+    private final boolean navigateToTestClass;
+    private final List<String> failed = new ArrayList<>();
+    private final List<String> problems = new ArrayList<>();
+    private final GenerationRun run = new GenerationRun("test classes");
+    private final SkeletonCompletion skeletonCompletion;
+    private int classCount;
+    private int generated;
+    private PsiClass lastTestClass;
+
+    /**
+     * @param classesCollector called in a read action to collect the production classes
+     * @param navigateToTestClass whether the generated test class is opened in the editor
+     */
+    GenerateTestsTask(@NotNull Project project,
+                      @NotNull Function<ProgressIndicator, List<SmartPsiElementPointer<PsiClass>>> classesCollector,
+                      boolean navigateToTestClass) {
+        super(project, "Generating Test Classes", true);
+        this.classesCollector = classesCollector;
+        this.navigateToTestClass = navigateToTestClass;
+        this.skeletonCompletion = new SkeletonCompletion(project);
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        try {
+            generate(indicator);
+        } finally {
+            GenerationStatistics.getInstance(myProject).finish(run);
+        }
+    }
+
+    private void generate(@NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(false);
+        indicator.setText("Collecting classes");
+        List<SmartPsiElementPointer<PsiClass>> classes = run.time("collect", () -> ReadAction.compute(() -> classesCollector.apply(indicator)));
+        classCount = classes.size();
+        TestGenerationEngine engine = TestGenerationEngine.getInstance(myProject);
+        TestClassAnalyzer analyzer = engine.createAnalyzer();
+        TestDirectories testDirectories = new TestDirectories();
+
+        for (int from = 0; from < classes.size(); from += CHUNK_SIZE) {
+            indicator.checkCanceled();
+            indicator.setFraction((double) from / classes.size());
+            indicator.setText("Generating test classes " + (from + 1) + " - " + Math.min(from + CHUNK_SIZE, classes.size()) + " of " + classes.size());
+
+            List<SmartPsiElementPointer<PsiClass>> pending = new ArrayList<>(classes.subList(from, Math.min(from + CHUNK_SIZE, classes.size())));
+            for (int attempt = 0; attempt < MAX_ANALYSIS_ATTEMPTS && !pending.isEmpty(); attempt++) {
+                List<TestClassModel> models = engine.analyze(pending, analyzer, indicator, run);
+                List<SmartPsiElementPointer<PsiClass>> outdated = new ArrayList<>();
+                run.time("write", () -> {
+                    ApplicationManager.getApplication().invokeAndWait(() -> WriteCommandAction.runWriteCommandAction(myProject,
+                            () -> generate(models, engine, testDirectories, outdated, indicator)));
+                    return null;
+                });
+                pending = outdated;
+            }
+            addOutdated(pending);
+        }
+        indicator.setFraction(1.0);
+    }
+
+    /**
+     * Reports the classes which still changed after the last analysis as failed.
+     */
+    private void addOutdated(@NotNull List<SmartPsiElementPointer<PsiClass>> outdated) {
+        ReadAction.run(() -> {
+            for (SmartPsiElementPointer<PsiClass> pointer : outdated) {
+                PsiClass psiClass = pointer.getElement();
+                if (psiClass != null) {
+                    LOG.info("Test class is not generated for " + psiClass.getQualifiedName() + ": it kept changing during the generation");
+                    failed.add(psiClass.getName());
+                }
+            }
+        });
+    }
+
+    private void generate(@NotNull List<TestClassModel> models, @NotNull TestGenerationEngine engine,
+                          @NotNull TestDirectories testDirectories, @NotNull List<SmartPsiElementPointer<PsiClass>> outdated,
+                          @NotNull ProgressIndicator indicator) {
+        for (TestClassModel model : models) {
+            if (indicator.isCanceled())
+                return;
+
+            PsiClass psiClass = model.getProductionClass().getElement();
+            if (psiClass == null)
+                continue;
+
+            if (engine.isOutdated(model)) {
+                outdated.add(model.getProductionClass());
+                continue;
+            }
+            if (model.isUpToDate()) {
+                lastTestClass = model.getExistingTestClass().getElement();
+                continue;
+            }
+            if (model.isSkeleton() && engine.hasTestFile(model)) {
+                skeletonCompletion.defer(model.getProductionClass());
+                continue;
+            }
+
+            try {
+                lastTestClass = engine.apply(model, testDirectories, run);
+                generated++;
+                if (model.isSkeleton()) {
+                    skeletonCompletion.add(model.getProductionClass(), lastTestClass);
+                }
+                if (model.getValidation() != null) {
+                    model.getValidation().getProblems().forEach(problem -> LOG.info("Generated test does not compile: " + problem));
+                    problems.addAll(model.getValidation().getProblems());
+                }
+            } catch (IncorrectOperationException e) {
+                LOG.info("Test class is not generated for " + psiClass.getQualifiedName() + ": " + e.getMessage());
+                failed.add(psiClass.getName());
+            }
+        }
+    }
+
+    /**
+     * The number of production classes collected.
+     */
+    int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * The number of test classes created or completed with missing members.
+     */
+    int getGenerated() {
+        return generated;
+    }
+
+    /**
+     * The names of the production classes whose test class could not be generated.
+     */
+    @NotNull
+    List<String> getFailed() {
+        return failed;
+    }
+
+    /**
+     * The problems left in the generated test classes after the repairs, each prefixed with the test class and member.
+     */
+    @NotNull
+    List<String> getProblems() {
+        return problems;
+    }
+
+    /**
+     * The timers and counters of the task. The write phase includes the wait for the event dispatch thread.
+     */
+    @NotNull
+    GenerationRun getRun() {
+        return run;
+    }
+
+    @Override
+    public void onSuccess() {
+        if (navigateToTestClass && lastTestClass != null && lastTestClass.isValid()) {
+            OpenSourceUtil.navigate(lastTestClass);
+        }
+    }
+
+    @Override
+    public void onFinished() {
+        if (!skeletonCompletion.isEmpty()) {
+            skeletonCompletion.scheduleWhenSmart();
+        }
+        if (navigateToTestClass && failed.isEmpty() && problems.isEmpty())
+            return;
+
+        String content = generated + " test class(es) generated"
+                + (skeletonCompletion.getSkeletonCount() == 0 ? "" : ", stubs are added after indexing")
+                + (skeletonCompletion.getDeferredCount() == 0 ? ""
+                        : ", " + skeletonCompletion.getDeferredCount() + " existing test class(es) are completed after indexing")
+                + (failed.isEmpty() ? "" : ", skipped: " + String.join(", ", failed))
+                + (problems.isEmpty() ? "" : "<br>" + problems.size() + " problem(s) could not be repaired:<br>"
+                        + problems.stream().limit(MAX_REPORTED_PROBLEMS).map(StringUtil::escapeXml).collect(Collectors.joining("<br>"))
+                        + (problems.size() > MAX_REPORTED_PROBLEMS ? "<br>..." : ""));
+        Notifications.Bus.notify(new Notification("Testrike", "Generate test classes", content,
+                failed.isEmpty() && problems.isEmpty() ? NotificationType.INFORMATION : NotificationType.WARNING), myProject);
+    }
+}
@@ -0,0 +1,332 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.IncorrectOperationException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks a rendered test file before it is added to the test root. The file is parsed outside the project and
+ * resolved against the project with its libraries inside the read action of the analysis, so the check runs
+ * in the background. The known faults of the generation are repaired in the text:
+ * <ul>
+ * <li>a construction of an interface, an abstract class or a class without a matching accessible constructor
+ * becomes a mock,</li>
+ * <li>a stub of a call which does not resolve is dropped, with its comment if it was the only one,</li>
+ * <li>the arguments of a stubbed call which do not resolve, such as the parameters of the production method,
+ * become matchers of any value.</li>
+ * </ul>
+ * The repaired text is parsed again, and its syntax errors and unresolved references are the problems left.
+ * The members added to an existing test class and the stubs added to a skeleton are checked the same way,
+ * each parsed in the context of a copy of the test class.
+ */
+class GeneratedTestValidator {
+
+    private static final String MOCK = "org.mockito.Mockito.mock";
+
+    private final Project project;
+    private final TestClassRenderer renderer = new TestClassRenderer();
+
+    GeneratedTestValidator(@NotNull Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Renders, checks and repairs the new test class of the model. Must be called inside a read action.
+     */
+    @NotNull
+    TestValidation validate(@NotNull TestClassModel model) {
+        String text = renderer.render(model);
+        PsiJavaFile file = parse(model, text);
+        List<String> repairs = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        return new TestValidation(file == null ? text : repair(model, file, repairs, problems, repairedText -> parse(model, repairedText)),
+                repairs, problems);
+    }
+
+    /**
+     * Renders, checks and repairs the members the model adds to its existing test class, each parsed in the context
+     * of the class so it resolves against the fields of the class. Must be called inside a read action.
+     */
+    @NotNull
+    TestValidation validateMembers(@NotNull TestClassModel model, @NotNull PsiClass testClass) {
+        return validateMembers(model, testClass, renderer.renderMembers(model));
+    }
+
+    /**
+     * Checks and repairs the stubs the model adds to the test class generated from its skeleton. The members of the
+     * result are test methods holding only the repaired stubs, one per method test of the model, or empty texts
+     * for the method tests without stubs. Must be called inside a read action.
+     */
+    @NotNull
+    TestValidation validateGivenStatements(@NotNull TestClassModel model, @NotNull PsiClass testClass) {
+        List<String> members = model.getMethodTests().stream()
+                .map(methodTest -> methodTest.getGivenStatements().isEmpty() ? ""
+                        : "public void " + methodTest.getTestMethodName() + "() {\n" + TestClassRenderer.GIVEN_COMMENT + "\n"
+                        + String.join("\n", methodTest.getGivenStatements()) + "\n}")
+                .collect(Collectors.toList());
+        return validateMembers(model, testClass, members);
+    }
+
+    /**
+     * Checks the members in a copy of the test class which has the new fields already, so the new methods
+     * resolve against the new mocks and the subject.
+     */
+    @NotNull
+    private TestValidation validateMembers(@NotNull TestClassModel model, @NotNull PsiClass testClass, @NotNull List<String> members) {
+        PsiClass context = PsiTreeUtil.findSameElementInCopy(testClass, (PsiFile) testClass.getContainingFile().copy());
+        for (String member : members) {
+            PsiMember field = member.isEmpty() || member.endsWith("}") ? null : parseMember(member, context);
+            if (field != null) {
+                context.add(field);
+            }
+        }
+
+        List<String> repairedMembers = new ArrayList<>();
+        List<String> repairs = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        for (String member : members) {
+            PsiMember parsed = member.isEmpty() ? null : parseMember(member, context);
+            repairedMembers.add(parsed == null ? member
+                    : repair(model, parsed, repairs, problems, repairedMember -> parseMember(repairedMember, context)));
+        }
+        return new TestValidation(repairedMembers, repairs, problems);
+    }
+
+    /**
+     * Repairs the text of the element and adds the repairs and the problems left.
+     *
+     * @param parser parses the repaired text again, to find the problems left
+     * @return the repaired text
+     */
+    @NotNull
+    private static String repair(@NotNull TestClassModel model, @NotNull PsiElement element, @NotNull List<String> repairs,
+                                 @NotNull List<String> problems, @NotNull Function<String, PsiElement> parser) {
+        String text = element.getText();
+        int offset = element.getTextRange().getStartOffset();
+        List<TextRange> ranges = new ArrayList<>();
+        List<String> replacements = new ArrayList<>();
+        int repairCount = repairs.size();
+        element.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitMethod(PsiMethod method) {
+                repairStubs(model, method, ranges, replacements, repairs);
+                super.visitMethod(method);
+            }
+
+            @Override
+            public void visitNewExpression(PsiNewExpression expression) {
+                super.visitNewExpression(expression);
+                String mock = getMockReplacement(expression);
+                if (mock != null && replace(expression.getTextRange(), mock, ranges, replacements)) {
+                    repairs.add(getLocation(model, expression) + ": mocked " + expression.getText());
+                }
+            }
+        });
+        if (repairs.size() == repairCount) {
+            problems.addAll(findProblems(model, element));
+            return text;
+        }
+
+        StringBuilder repaired = new StringBuilder(text);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt((Integer i) -> ranges.get(i).getStartOffset()).reversed());
+        for (int i : order) {
+            repaired.replace(ranges.get(i).getStartOffset() - offset, ranges.get(i).getEndOffset() - offset, replacements.get(i));
+        }
+        String repairedText = repaired.toString();
+        PsiElement repairedElement = parser.apply(repairedText);
+        if (repairedElement != null) {
+            problems.addAll(findProblems(model, repairedElement));
+        }
+        return repairedText;
+    }
+
+    @Nullable
+    private PsiMember parseMember(@NotNull String member, @NotNull PsiClass testClass) {
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        try {
+            return member.endsWith("}") ? factory.createMethodFromText(member, testClass) : factory.createFieldFromText(member, testClass);
+        } catch (IncorrectOperationException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private PsiJavaFile parse(@NotNull TestClassModel model, @NotNull String text) {
+        String fileName = model.getTestClassName() + "." + StdFileTypes.JAVA.getDefaultExtension();
+        PsiFile psiFile = PsiFileFactory.getInstance(project).createFileFromText(fileName, StdFileTypes.JAVA, text);
+        return psiFile instanceof PsiJavaFile ? (PsiJavaFile) psiFile : null;
+    }
+
+    private static void repairStubs(@NotNull TestClassModel model, @NotNull PsiMethod method, @NotNull List<TextRange> ranges,
+                                    @NotNull List<String> replacements, @NotNull List<String> repairs) {
+        PsiCodeBlock body = method.getBody();
+        if (body == null) {
+            return;
+        }
+        int stubs = 0;
+        int dropped = 0;
+        for (PsiStatement statement : body.getStatements()) {
+            PsiMethodCallExpression stubbedCall = getStubbedCall(statement);
+            if (stubbedCall == null) {
+                continue;
+            }
+            stubs++;
+            String location = getLocation(model, statement);
+            PsiMethod stubbedMethod = stubbedCall.resolveMethod();
+            PsiExpression[] arguments = stubbedCall.getArgumentList().getExpressions();
+            if (stubbedMethod == null
+                    || Stream.of(arguments).anyMatch(GeneratedTestValidator::hasUnresolvedReference)
+                    && (stubbedMethod.isVarArgs() || stubbedMethod.getParameterList().getParametersCount() != arguments.length)) {
+                if (replace(getDeletionRange(statement), "", ranges, replacements)) {
+                    repairs.add(location + ": dropped the stub of " + stubbedCall.getText());
+                    dropped++;
+                }
+            } else if (Stream.of(arguments).anyMatch(GeneratedTestValidator::hasUnresolvedReference)) {
+                String matchers = Stream.of(stubbedMethod.getParameterList().getParameters())
+                        .map(parameter -> StubDiscovery.getMatcher(parameter.getType()))
+                        .collect(Collectors.joining(", ", "(", ")"));
+                if (replace(stubbedCall.getArgumentList().getTextRange(), matchers, ranges, replacements)) {
+                    repairs.add(location + ": matched any arguments of " + stubbedCall.getText());
+                }
+            }
+        }
+        if (stubs > 0 && dropped == stubs) {
+            for (PsiComment comment : PsiTreeUtil.getChildrenOfTypeAsList(body, PsiComment.class)) {
+                if (TestClassRenderer.GIVEN_COMMENT.equals(comment.getText())) {
+                    replace(getDeletionRange(comment), "", ranges, replacements);
+                }
+            }
+        }
+    }
+
+    /**
+     * The call stubbed by a statement of the form {@code when(mock.call(arguments)).thenReturn(value);}.
+     */
+    @Nullable
+    private static PsiMethodCallExpression getStubbedCall(@NotNull PsiStatement statement) {
+        if (!(statement instanceof PsiExpressionStatement)) {
+            return null;
+        }
+        PsiExpression expression = ((PsiExpressionStatement) statement).getExpression();
+        if (!(expression instanceof PsiMethodCallExpression)
+                || !"thenReturn".equals(((PsiMethodCallExpression) expression).getMethodExpression().getReferenceName())) {
+            return null;
+        }
+        PsiExpression qualifier = ((PsiMethodCallExpression) expression).getMethodExpression().getQualifierExpression();
+        if (!(qualifier instanceof PsiMethodCallExpression)
+                || !"when".equals(((PsiMethodCallExpression) qualifier).getMethodExpression().getReferenceName())) {
+            return null;
+        }
+        PsiExpression[] whenArguments = ((PsiMethodCallExpression) qualifier).getArgumentList().getExpressions();
+        return whenArguments.length == 1 && whenArguments[0] instanceof PsiMethodCallExpression
+                ? (PsiMethodCallExpression) whenArguments[0] : null;
+    }
+
+    /**
+     * A mock replacing a construction which cannot compile, or null if the construction is fine
+     * or a mock cannot replace it.
+     */
+    @Nullable
+    private static String getMockReplacement(@NotNull PsiNewExpression expression) {
+        if (expression.getAnonymousClass() != null || expression.getArrayDimensions().length > 0 || expression.getArrayInitializer() != null) {
+            return null;
+        }
+        PsiJavaCodeReferenceElement reference = expression.getClassReference();
+        PsiElement resolved = reference == null ? null : reference.resolve();
+        if (!(resolved instanceof PsiClass) || ((PsiClass) resolved).isEnum() || ((PsiClass) resolved).getQualifiedName() == null) {
+            return null;
+        }
+        PsiClass psiClass = (PsiClass) resolved;
+        boolean impossible = psiClass.isInterface() || psiClass.hasModifierProperty(PsiModifier.ABSTRACT)
+                || psiClass.getConstructors().length > 0 && !psiClass.hasModifierProperty(PsiModifier.FINAL)
+                && !expression.resolveMethodGenerics().isValidResult();
+        return impossible ? MOCK + "(" + psiClass.getQualifiedName() + ".class)" : null;
+    }
+
+    /**
+     * Adds a replacement unless it overlaps one added before.
+     */
+    private static boolean replace(@NotNull TextRange range, @NotNull String replacement,
+                                   @NotNull List<TextRange> ranges, @NotNull List<String> replacements) {
+        if (ranges.stream().anyMatch(range::intersectsStrict)) {
+            return false;
+        }
+        ranges.add(range);
+        replacements.add(replacement);
+        return true;
+    }
+
+    /**
+     * The range of the element with the white space before it, so no empty line is left.
+     */
+    @NotNull
+    private static TextRange getDeletionRange(@NotNull PsiElement element) {
+        PsiElement previous = element.getPrevSibling();
+        int startOffset = previous instanceof PsiWhiteSpace ? previous.getTextRange().getStartOffset() : element.getTextRange().getStartOffset();
+        return new TextRange(startOffset, element.getTextRange().getEndOffset());
+    }
+
+    @NotNull
+    private static List<String> findProblems(@NotNull TestClassModel model, @NotNull PsiElement element) {
+        List<String> problems = new ArrayList<>();
+        element.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitErrorElement(PsiErrorElement element) {
+                problems.add(getLocation(model, element) + ": " + element.getErrorDescription());
+            }
+
+            @Override
+            public void visitReferenceElement(PsiJavaCodeReferenceElement reference) {
+                if (isUnresolved(reference)) {
+                    // the qualifiers of an unresolved reference are not reported again
+                    problems.add(getLocation(model, reference) + ": cannot resolve " + reference.getText());
+                    return;
+                }
+                super.visitReferenceElement(reference);
+            }
+        });
+        return problems;
+    }
+
+    private static boolean hasUnresolvedReference(@NotNull PsiElement element) {
+        return element instanceof PsiJavaCodeReferenceElement && isUnresolved((PsiJavaCodeReferenceElement) element)
+                || PsiTreeUtil.findChildrenOfType(element, PsiJavaCodeReferenceElement.class).stream().anyMatch(GeneratedTestValidator::isUnresolved);
+    }
+
+    /**
+     * Whether the reference resolves to nothing or, for a method call, to no applicable accessible method.
+     */
+    private static boolean isUnresolved(@NotNull PsiJavaCodeReferenceElement reference) {
+        PsiElement parent = reference.getParent();
+        if (parent instanceof PsiMethodCallExpression && ((PsiMethodCallExpression) parent).getMethodExpression() == reference) {
+            JavaResolveResult result = ((PsiMethodCallExpression) parent).resolveMethodGenerics();
+            return result.getElement() == null || !result.isValidResult();
+        }
+        return reference.advancedResolve(false).getElement() == null;
+    }
+
+    /**
+     * The test class and the member of the element, to tell where a repair or a problem is.
+     */
+    @NotNull
+    private static String getLocation(@NotNull TestClassModel model, @NotNull PsiElement element) {
+        PsiMember member = PsiTreeUtil.getParentOfType(element, PsiMethod.class, PsiField.class);
+        return member == null || member.getName() == null ? model.getTestClassName() : model.getTestClassName() + "." + member.getName();
+    }
+}
@@ -0,0 +1,101 @@
+package com.vv.testrike.generatetest;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The machine-readable result of a headless generation: the classes processed, the files written and
+ * the problems left in them per module, and the milliseconds spent in each phase. The "generate" phase
+ * is the wall clock time of all the modules, while the phases of the modules are summed over the modules,
+ * so with parallel modules they can exceed it.
+ */
+class GenerationSummary {
+
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private final List<ModuleResult> modules = new ArrayList<>();
+
+    void addPhase(@NotNull String phase, long nanos) {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    void addModule(@NotNull String moduleName, @NotNull GenerateTestsTask task) {
+        modules.add(new ModuleResult(moduleName, task.getClassCount(), task.getGenerated(), task.getFailed(), task.getProblems()));
+        task.getRun().getPhaseNanos().forEach(this::addPhase);
+    }
+
+    int getFailedCount() {
+        return modules.stream().mapToInt(module -> module.failed.size()).sum();
+    }
+
+    @NotNull
+    String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"classesProcessed\": ").append(modules.stream().mapToInt(module -> module.classes).sum()).append(",\n");
+        json.append("  \"filesWritten\": ").append(modules.stream().mapToInt(module -> module.generated).sum()).append(",\n");
+        json.append("  \"failed\": ").append(getFailedCount()).append(",\n");
+
+        json.append("  \"phasesMs\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+            json.append(separator).append("    ").append(quote(phase.getKey())).append(": ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(phase.getValue()));
+            separator = ",\n";
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"modules\": [");
+        separator = "\n";
+        for (ModuleResult module : modules) {
+            json.append(separator).append("    {\"name\": ").append(quote(module.name))
+                    .append(", \"classesProcessed\": ").append(module.classes)
+                    .append(", \"filesWritten\": ").append(module.generated)
+                    .append(", \"failed\": [");
+            for (int i = 0; i < module.failed.size(); i++) {
+                json.append(i == 0 ? "" : ", ").append(quote(module.failed.get(i)));
+            }
+            json.append("], \"problems\": [");
+            for (int i = 0; i < module.problems.size(); i++) {
+                json.append(i == 0 ? "" : ", ").append(quote(module.problems.get(i)));
+            }
+            json.append("]}");
+            separator = ",\n";
+        }
+        return json.append(modules.isEmpty() ? "]\n}\n" : "\n  ]\n}\n").toString();
+    }
+
+    @NotNull
+    private static String quote(@NotNull String value) {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private static final class ModuleResult {
+        private final String name;
+        private final int classes;
+        private final int generated;
+        private final List<String> failed;
+        private final List<String> problems;
+
+        ModuleResult(@NotNull String name, int classes, int generated, @NotNull List<String> failed, @NotNull List<String> problems) {
+            this.name = name;
+            this.classes = classes;
+            this.generated = generated;
+            this.failed = failed;
+            this.problems = problems;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.vv.testrike.generatetest;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces the fully qualified class names of a generated code text with their short names
+ * and collects the imports the short names need. A short name which would clash with an
+ * already imported class of the same name is left qualified.
+ */
+class ImportCollector {
+
+    private static final Pattern QUALIFIED_NAME_OR_LITERAL = Pattern.compile(
+            "\"(?:\\\\.|[^\"\\\\])*\"|'(?:\\\\.|[^'\\\\])*'|[A-Za-z_$][\\w$]*(?:\\s*\\.\\s*[A-Za-z_$][\\w$]*)+");
+
+    private final String packageName;
+    private final boolean shortenNames;
+    private final Map<String, String> importsBySimpleName = new HashMap<>();
+
+    ImportCollector(@NotNull String packageName) {
+        this(packageName, true);
+    }
+
+    private ImportCollector(@NotNull String packageName, boolean shortenNames) {
+        this.packageName = packageName;
+        this.shortenNames = shortenNames;
+    }
+
+    /**
+     * A collector which leaves the names qualified, for members added to an existing file
+     * whose references are shortened against the imports the file already has.
+     */
+    @NotNull
+    static ImportCollector keepingQualifiedNames() {
+        return new ImportCollector("", false);
+    }
+
+    /**
+     * @param text a type, or a qualified class or member name the renderer writes itself, with fully qualified
+     *             class references; the expressions of the analysis go through {@link #shorten(String, Collection)}
+     * @return the same text with the class references shortened where possible
+     */
+    @NotNull
+    String shorten(@NotNull String text) {
+        if (!shortenNames) {
+            return text;
+        }
+        Matcher matcher = QUALIFIED_NAME_OR_LITERAL.matcher(text);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String match = matcher.group();
+            String replacement = match.startsWith("\"") || match.startsWith("'") ? match : shortenQualifiedName(match);
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * Shortens only the references to the given classes, so a field access such as {@code config.MAX_SIZE}
+     * is never taken for a class. A reference to a nested class is shortened to its top level class.
+     *
+     * @param text an expression or a statement with fully qualified class references
+     * @param classNames the qualified names of the top level classes the text refers to
+     * @return the same text with the references to those classes shortened where possible
+     */
+    @NotNull
+    String shorten(@NotNull String text, @NotNull Collection<String> classNames) {
+        if (!shortenNames || classNames.isEmpty()) {
+            return text;
+        }
+        Matcher matcher = QUALIFIED_NAME_OR_LITERAL.matcher(text);
+        StringBuffer result = new StringBuffer();
+        while (matcher.find()) {
+            String match = matcher.group();
+            String replacement = match.startsWith("\"") || match.startsWith("'") ? match : shortenClassName(match, classNames);
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * The qualified names in the text, such as {@code java.util.Collections.emptyList} or {@code mock.call},
+     * without the string and character literals and with the whitespace removed.
+     */
+    @NotNull
+    static List<String> findQualifiedNames(@NotNull String text) {
+        List<String> names = new ArrayList<>();
+        Matcher matcher = QUALIFIED_NAME_OR_LITERAL.matcher(text);
+        while (matcher.find()) {
+            String match = matcher.group();
+            if (!match.startsWith("\"") && !match.startsWith("'")) {
+                names.add(match.replaceAll("\\s", ""));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the import statements collected so far, in alphabetical order
+     */
+    @NotNull
+    SortedSet<String> getImports() {
+        SortedSet<String> imports = new TreeSet<>();
+        importsBySimpleName.forEach((simpleName, qualifiedName) -> {
+            if (!isImplicitlyImported(qualifiedName.substring(0, qualifiedName.length() - simpleName.length() - 1))) {
+                imports.add(qualifiedName);
+            }
+        });
+        return imports;
+    }
+
+    @NotNull
+    private String shortenQualifiedName(@NotNull String qualifiedName) {
+        String[] segments = qualifiedName.replaceAll("\\s", "").split("\\.");
+
+        int classSegment = -1;
+        for (int i = 1; i < segments.length; i++) {
+            if (Character.isUpperCase(segments[i].charAt(0)) && isPackage(segments, i)) {
+                classSegment = i;
+                break;
+            }
+        }
+        if (classSegment < 0) {
+            return qualifiedName;
+        }
+
+        String simpleName = segments[classSegment];
+        String classPackage = String.join(".", Arrays.copyOfRange(segments, 0, classSegment));
+        String classQualifiedName = classPackage + "." + simpleName;
+        if (!register(simpleName, classQualifiedName)) {
+            return qualifiedName;
+        }
+        return String.join(".", Arrays.copyOfRange(segments, classSegment, segments.length));
+    }
+
+    @NotNull
+    private String shortenClassName(@NotNull String qualifiedName, @NotNull Collection<String> classNames) {
+        String name = qualifiedName.replaceAll("\\s", "");
+        for (String className : classNames) {
+            if (name.equals(className) || name.startsWith(className + ".")) {
+                String simpleName = className.substring(className.lastIndexOf('.') + 1);
+                return register(simpleName, className) ? simpleName + name.substring(className.length()) : qualifiedName;
+            }
+        }
+        return qualifiedName;
+    }
+
+    private static boolean isPackage(@NotNull String[] segments, int end) {
+        for (int i = 0; i < end; i++) {
+            if (!Character.isLowerCase(segments[i].charAt(0))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean register(@NotNull String simpleName, @NotNull String classQualifiedName) {
+        String imported = importsBySimpleName.putIfAbsent(simpleName, classQualifiedName);
+        return imported == null || imported.equals(classQualifiedName);
+    }
+
+    private boolean isImplicitlyImported(@NotNull String classPackage) {
+        return classPackage.equals(packageName) || "java.lang".equals(classPackage);
+    }
+}
@@ -0,0 +1,125 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ModuleRootModificationUtil;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.IncorrectOperationException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.model.java.JavaModuleSourceRootTypes;
+import org.jetbrains.jps.model.java.JavaResourceRootType;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Enables the parallel execution of JUnit Jupiter in the {@code junit-platform.properties} of a module, so the
+ * test classes marked with {@code @Execution(CONCURRENT)} run concurrently. The default mode stays same thread,
+ * so the classes which are not marked run as before. The settings a file already has are left as they are.
+ * The file goes to a test resource root, which Maven and Gradle copy to the test classpath; a module without one
+ * gets {@value #TEST_RESOURCE_ROOT}. Must be called inside a write action.
+ */
+class JUnitPlatformProperties {
+
+    static final String FILE_NAME = "junit-platform.properties";
+    static final String PARALLEL_ENABLED = "junit.jupiter.execution.parallel.enabled";
+    static final String PARALLEL_MODE_DEFAULT = "junit.jupiter.execution.parallel.mode.default";
+
+    /**
+     * The path of the test resource root below the content root, as Maven and Gradle lay it out.
+     */
+    static final String TEST_RESOURCE_ROOT = "src/test/resources";
+
+    private JUnitPlatformProperties() {
+    }
+
+    /**
+     * @return whether the parallel execution is configured, false if the module has no place for the file
+     */
+    static boolean enableParallelExecution(@NotNull Module module) {
+        VirtualFile root = getTestResourceRoot(module);
+        if (root == null) {
+            return false;
+        }
+        try {
+            VirtualFile file = root.findChild(FILE_NAME);
+            if (file == null) {
+                file = root.createChildData(JUnitPlatformProperties.class, FILE_NAME);
+            }
+            Document document = FileDocumentManager.getInstance().getDocument(file);
+            if (document == null) {
+                throw new IncorrectOperationException(file.getPath() + " is not a text file");
+            }
+            String text = document.getImmutableCharSequence().toString();
+            StringBuilder settings = new StringBuilder();
+            if (!text.contains(PARALLEL_ENABLED)) {
+                settings.append(PARALLEL_ENABLED).append(" = true\n");
+            }
+            if (!text.contains(PARALLEL_MODE_DEFAULT)) {
+                settings.append(PARALLEL_MODE_DEFAULT).append(" = same_thread\n");
+            }
+            if (settings.length() > 0) {
+                boolean newLine = text.isEmpty() || text.endsWith("\n");
+                document.insertString(text.length(), (newLine ? "" : "\n") + settings);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new IncorrectOperationException(FILE_NAME + " can't be created: " + e.getMessage(), (Throwable) e);
+        }
+    }
+
+    /**
+     * The first test resource root of the module. If it has none, {@value #TEST_RESOURCE_ROOT} is created in the
+     * content root of its test sources and registered as one, or null is returned if the module has no content root.
+     */
+    @Nullable
+    private static VirtualFile getTestResourceRoot(@NotNull Module module) {
+        ModuleRootManager rootManager = ModuleRootManager.getInstance(module);
+        List<VirtualFile> roots = rootManager.getSourceRoots(JavaResourceRootType.TEST_RESOURCE);
+        if (!roots.isEmpty()) {
+            return roots.get(0);
+        }
+        VirtualFile contentRoot = getTestContentRoot(rootManager);
+        if (contentRoot == null) {
+            return null;
+        }
+
+        VirtualFile resourceRoot;
+        try {
+            resourceRoot = VfsUtil.createDirectoryIfMissing(contentRoot, TEST_RESOURCE_ROOT);
+        } catch (IOException e) {
+            throw new IncorrectOperationException("Test resource folder can't be created: " + e.getMessage(), (Throwable) e);
+        }
+        ModuleRootModificationUtil.updateModel(module, model -> {
+            for (ContentEntry contentEntry : model.getContentEntries()) {
+                if (contentRoot.equals(contentEntry.getFile())) {
+                    contentEntry.addSourceFolder(resourceRoot, JavaResourceRootType.TEST_RESOURCE);
+                    return;
+                }
+            }
+        });
+        return resourceRoot;
+    }
+
+    /**
+     * The content root holding the first test source root of the module, or its first content root.
+     */
+    @Nullable
+    private static VirtualFile getTestContentRoot(@NotNull ModuleRootManager rootManager) {
+        VirtualFile[] contentRoots = rootManager.getContentRoots();
+        for (VirtualFile testRoot : rootManager.getSourceRoots(JavaModuleSourceRootTypes.TESTS)) {
+            for (VirtualFile contentRoot : contentRoots) {
+                if (VfsUtilCore.isAncestor(contentRoot, testRoot, false)) {
+                    return contentRoot;
+                }
+            }
+        }
+        return contentRoots.length == 0 ? null : contentRoots[0];
+    }
+}
@@ -0,0 +1,104 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides whether the tests of a production class may run concurrently. They may when neither the class, its
+ * source superclasses nor its test hold static state another test could change: no static field which is not
+ * final, or is final but of a mutable type, no singleton instance of a mutable type, and no static mocks or Spring
+ * context in the test. A source class is mutable when it or a source superclass has an instance field which is not
+ * final or is of a mutable type, so enums and constants such as {@code static final Money ZERO} are safe.
+ * The dependencies are mocks of each test, so they are not shared.
+ */
+class ParallelSafety {
+
+    private static final List<String> MUTABLE_TYPES = Arrays.asList(
+            CommonClassNames.JAVA_UTIL_COLLECTION, CommonClassNames.JAVA_UTIL_MAP,
+            CommonClassNames.JAVA_LANG_STRING_BUILDER, CommonClassNames.JAVA_LANG_STRING_BUFFER,
+            "java.util.Date", "java.util.Calendar", "java.text.Format", "java.lang.ThreadLocal");
+
+    private static final List<String> SHARED_STATE_IN_TEST = Arrays.asList(
+            "mockStatic", "PowerMock", "SpringExtension", "SpringRunner", "SpringBootTest", "ContextConfiguration");
+
+    private ParallelSafety() {
+    }
+
+    /**
+     * @param testClass the existing test class of the production class, or null for a new test class
+     */
+    static boolean isSafe(@NotNull PsiClass productionClass, @Nullable PsiClass testClass) {
+        for (PsiClass psiClass = productionClass; psiClass != null && !(psiClass instanceof PsiCompiledElement); psiClass = psiClass.getSuperClass()) {
+            if (hasSharedState(psiClass)) {
+                return false;
+            }
+        }
+        if (testClass == null) {
+            return true;
+        }
+        String testText = testClass.getText();
+        return !hasSharedState(testClass) && SHARED_STATE_IN_TEST.stream().noneMatch(testText::contains);
+    }
+
+    private static boolean hasSharedState(@NotNull PsiClass psiClass) {
+        for (PsiField field : psiClass.getFields()) {
+            if (field.hasModifierProperty(PsiModifier.STATIC)
+                    && (!field.hasModifierProperty(PsiModifier.FINAL) || isMutable(field.getType(), new HashSet<>()))) {
+                return true;
+            }
+        }
+        for (PsiMethod method : psiClass.findMethodsByName("getInstance", false)) {
+            PsiType returnType = method.getReturnType();
+            if (method.hasModifierProperty(PsiModifier.STATIC) && isInstanceOf(returnType, psiClass) && isMutable(returnType, new HashSet<>())) {
+                return true;
+            }
+        }
+        for (PsiClass innerClass : psiClass.getInnerClasses()) {
+            if (innerClass.hasModifierProperty(PsiModifier.STATIC) && hasSharedState(innerClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param visited the source classes checked already, so a class referring to itself is not checked again
+     */
+    private static boolean isMutable(@Nullable PsiType type, @NotNull Set<PsiClass> visited) {
+        if (type instanceof PsiArrayType) {
+            return true;
+        }
+        PsiClass psiClass = PsiUtil.resolveClassInClassTypeOnly(type);
+        if (psiClass == null) {
+            return false;
+        }
+        String qualifiedName = psiClass.getQualifiedName();
+        if (qualifiedName != null && qualifiedName.startsWith("java.util.concurrent.atomic.")
+                || MUTABLE_TYPES.stream().anyMatch(mutableType -> InheritanceUtil.isInheritor(psiClass, false, mutableType))) {
+            return true;
+        }
+        for (PsiClass sourceClass = psiClass; sourceClass != null && !(sourceClass instanceof PsiCompiledElement) && visited.add(sourceClass);
+             sourceClass = sourceClass.getSuperClass()) {
+            for (PsiField field : sourceClass.getFields()) {
+                if (!field.hasModifierProperty(PsiModifier.STATIC)
+                        && (!field.hasModifierProperty(PsiModifier.FINAL) || isMutable(field.getType(), visited))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInstanceOf(@Nullable PsiType type, @NotNull PsiClass psiClass) {
+        PsiClass typeClass = PsiUtil.resolveClassInClassTypeOnly(type);
+        return typeClass != null && InheritanceUtil.isInheritorOrSelf(typeClass, psiClass, true);
+    }
+}
@@ -0,0 +1,222 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.notification.Notifications;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.util.IncorrectOperationException;
+import com.vv.testrike.statistics.GenerationRun;
+import com.vv.testrike.statistics.GenerationStatistics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Completes the test classes generated from skeletons during indexing once the indexing is finished: their
+ * production classes are analysed again and the stubs are added to the test methods. The rest of the test
+ * classes, including the arguments of the skeletons, is left as it is. The classes deferred during indexing
+ * because their test class exists are generated as usual, adding the missing members to the existing test classes.
+ * A class which keeps changing is analysed {@link GenerateTestsTask#MAX_ANALYSIS_ATTEMPTS} times at most and
+ * reported as not completed. If the indexing starts again before the completion is done, it is scheduled once more.
+ */
+class SkeletonCompletion extends Task.Backgroundable {
+
+    private static final Logger LOG = Logger.getInstance(SkeletonCompletion.class);
+
+    /**
+     * The generated test classes by their production classes.
+     */
+    private final Map<SmartPsiElementPointer<PsiClass>, SmartPsiElementPointer<PsiClass>> testClasses = new LinkedHashMap<>();
+    private final List<SmartPsiElementPointer<PsiClass>> deferred = new ArrayList<>();
+    private final GenerationRun run = new GenerationRun("skeleton completion");
+    private final List<String> failed = new ArrayList<>();
+    private int completed;
+    private int generated;
+    private boolean interrupted;
+
+    SkeletonCompletion(@NotNull Project project) {
+        super(project, "Completing Generated Test Classes", true);
+    }
+
+    /**
+     * Adds the test class generated from the skeleton of the production class. Must be called inside a read action.
+     */
+    void add(@NotNull SmartPsiElementPointer<PsiClass> productionClass, @NotNull PsiClass testClass) {
+        testClasses.put(productionClass, SmartPointerManager.getInstance(myProject).createSmartPsiElementPointer(testClass));
+    }
+
+    /**
+     * Adds a production class whose test class exists, so it is generated after the indexing.
+     */
+    void defer(@NotNull SmartPsiElementPointer<PsiClass> productionClass) {
+        deferred.add(productionClass);
+    }
+
+    boolean isEmpty() {
+        return testClasses.isEmpty() && deferred.isEmpty();
+    }
+
+    int getSkeletonCount() {
+        return testClasses.size();
+    }
+
+    int getDeferredCount() {
+        return deferred.size();
+    }
+
+    /**
+     * Runs the completion in the background after the indexing.
+     */
+    void scheduleWhenSmart() {
+        DumbService.getInstance(myProject).runWhenSmart(() -> ProgressManager.getInstance().run(this));
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        try {
+            complete(indicator);
+        } catch (IndexNotReadyException e) {
+            interrupted = true;
+        } finally {
+            GenerationStatistics.getInstance(myProject).finish(run);
+        }
+    }
+
+    private void complete(@NotNull ProgressIndicator indicator) {
+        indicator.setText("Completing " + testClasses.size() + " test class(es) with stubs");
+        TestGenerationEngine engine = TestGenerationEngine.getInstance(myProject);
+        TestClassAnalyzer analyzer = engine.createAnalyzer();
+
+        List<SmartPsiElementPointer<PsiClass>> pending = new ArrayList<>(testClasses.keySet());
+        for (int attempt = 0; attempt < GenerateTestsTask.MAX_ANALYSIS_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<TestClassModel> models = engine.analyzeAsNew(pending, this::findGeneratedTestClass, analyzer, indicator, run);
+            List<SmartPsiElementPointer<PsiClass>> outdated = new ArrayList<>();
+            run.time("write", () -> {
+                ApplicationManager.getApplication().invokeAndWait(() -> WriteCommandAction.runWriteCommandAction(myProject,
+                        () -> complete(models, engine, outdated)));
+                return null;
+            });
+            pending = outdated;
+        }
+        addFailed(pending);
+
+        indicator.setText("Completing " + deferred.size() + " existing test class(es)");
+        pending = new ArrayList<>(deferred);
+        TestDirectories testDirectories = new TestDirectories();
+        for (int attempt = 0; attempt < GenerateTestsTask.MAX_ANALYSIS_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<TestClassModel> models = engine.analyzeDeferred(pending, analyzer, indicator, run);
+            List<SmartPsiElementPointer<PsiClass>> outdated = new ArrayList<>();
+            run.time("write", () -> {
+                ApplicationManager.getApplication().invokeAndWait(() -> WriteCommandAction.runWriteCommandAction(myProject,
+                        () -> generate(models, engine, testDirectories, outdated)));
+                return null;
+            });
+            pending = outdated;
+        }
+        addFailed(pending);
+    }
+
+    private void addFailed(@NotNull List<SmartPsiElementPointer<PsiClass>> classes) {
+        ReadAction.run(() -> classes.stream()
+                .map(SmartPsiElementPointer::getElement)
+                .filter(Objects::nonNull)
+                .forEach(psiClass -> failed.add(psiClass.getName())));
+    }
+
+    private void complete(@NotNull List<TestClassModel> models, @NotNull TestGenerationEngine engine,
+                          @NotNull List<SmartPsiElementPointer<PsiClass>> outdated) {
+        for (TestClassModel model : models) {
+            PsiClass testClass = findTestClass(model);
+            if (testClass == null)
+                continue;
+
+            if (engine.isOutdated(model)) {
+                outdated.add(model.getProductionClass());
+                continue;
+            }
+            if (engine.completeSkeleton(testClass, model, run) > 0) {
+                completed++;
+            }
+        }
+    }
+
+    private void generate(@NotNull List<TestClassModel> models, @NotNull TestGenerationEngine engine,
+                          @NotNull TestDirectories testDirectories, @NotNull List<SmartPsiElementPointer<PsiClass>> outdated) {
+        for (TestClassModel model : models) {
+            PsiClass psiClass = model.getProductionClass().getElement();
+            if (psiClass == null || model.isUpToDate())
+                continue;
+
+            if (engine.isOutdated(model)) {
+                outdated.add(model.getProductionClass());
+                continue;
+            }
+            try {
+                engine.apply(model, testDirectories, run);
+                generated++;
+            } catch (IncorrectOperationException e) {
+                LOG.info("Test class is not generated for " + psiClass.getQualifiedName() + ": " + e.getMessage());
+                failed.add(psiClass.getName());
+            }
+        }
+    }
+
+    @Nullable
+    private PsiClass findTestClass(@NotNull TestClassModel model) {
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(myProject);
+        for (Map.Entry<SmartPsiElementPointer<PsiClass>, SmartPsiElementPointer<PsiClass>> entry : testClasses.entrySet()) {
+            if (pointerManager.pointToTheSameElement(entry.getKey(), model.getProductionClass())) {
+                return entry.getValue().getElement();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The test class generated from the skeleton of the production class. Must be called inside a read action.
+     */
+    @Nullable
+    private PsiClass findGeneratedTestClass(@NotNull PsiClass productionClass) {
+        for (Map.Entry<SmartPsiElementPointer<PsiClass>, SmartPsiElementPointer<PsiClass>> entry : testClasses.entrySet()) {
+            if (productionClass.equals(entry.getKey().getElement())) {
+                return entry.getValue().getElement();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onFinished() {
+        if (interrupted) {
+            SkeletonCompletion completion = new SkeletonCompletion(myProject);
+            completion.testClasses.putAll(testClasses);
+            completion.deferred.addAll(deferred);
+            completion.scheduleWhenSmart();
+            return;
+        }
+        if (completed > 0 || generated > 0 || !failed.isEmpty()) {
+            Notifications.Bus.notify(new Notification("Testrike", "Generate test classes",
+                    completed + " test class(es) generated during indexing completed with stubs"
+                            + (generated == 0 ? "" : ", " + generated + " existing test class(es) completed")
+                            + (failed.isEmpty() ? "" : ", not completed: " + String.join(", ", failed)),
+                    failed.isEmpty() ? NotificationType.INFORMATION : NotificationType.WARNING), myProject);
+        }
+    }
+}
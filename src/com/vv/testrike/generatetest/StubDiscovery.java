@@ -0,0 +1,129 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.*;
+import com.intellij.psi.util.TypeConversionUtil;
+import com.vv.testrike.generatetest.WalkingVisitor.FieldCall;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the calls on the mocks of a tested method which need stubbing. The calls of every method are resolved
+ * once per generation run and reused by each tested method reaching it. The private and same-class helper
+ * methods are followed up to the configured depth; only calls whose qualifier is an injected mock are
+ * stubbed, and identical stubs are emitted once. The arguments of a stubbed call are matchers of the parameter
+ * types, since the expressions of the production method do not exist in the test. It may be used by concurrent analyses.
+ */
+class StubDiscovery {
+
+    static final int DEFAULT_HELPER_DEPTH = 2;
+
+    private static final String MATCHERS = "org.mockito.ArgumentMatchers.";
+
+    private final int helperDepth;
+    private final ValueRegistry values;
+    private final Map<PsiMethod, MethodCalls> methodCalls = new ConcurrentHashMap<>();
+    private final LongAdder resolveCount = new LongAdder();
+
+    StubDiscovery(int helperDepth) {
+        this(helperDepth, new ValueRegistry());
+    }
+
+    /**
+     * @param values builds the values returned by the stubs
+     */
+    StubDiscovery(int helperDepth, @NotNull ValueRegistry values) {
+        this.helperDepth = helperDepth;
+        this.values = values;
+    }
+
+    /**
+     * @param mocks the fields of the tested class which are mocked, with the name of their mock in the test
+     * @return the stubbing statements of the method, in the order of the calls
+     */
+    @NotNull
+    List<String> discover(@NotNull PsiMethod method, @NotNull Map<PsiField, String> mocks) {
+        Set<String> stubs = new LinkedHashSet<>();
+        collect(method, mocks, helperDepth, stubs, new HashSet<>());
+        return new ArrayList<>(stubs);
+    }
+
+    /**
+     * A matcher of any value of the type. The class of a reference type is given, so an overloaded method is still chosen.
+     */
+    @NotNull
+    static String getMatcher(@NotNull PsiType type) {
+        if (type instanceof PsiPrimitiveType) {
+            return MATCHERS + "any" + StringUtil.capitalize(type.getCanonicalText()) + "()";
+        }
+        PsiType erasure = TypeConversionUtil.erasure(type);
+        return erasure.equalsToText(CommonClassNames.JAVA_LANG_OBJECT)
+                ? MATCHERS + "any()"
+                : MATCHERS + "any(" + erasure.getCanonicalText() + ".class)";
+    }
+
+    /**
+     * The number of references resolved since the discovery was created.
+     */
+    long getResolveCount() {
+        return resolveCount.sum();
+    }
+
+    private void collect(@NotNull PsiMethod method, @NotNull Map<PsiField, String> mocks, int depth,
+                         @NotNull Set<String> stubs, @NotNull Set<PsiMethod> visited) {
+        if (!visited.add(method)) {
+            return;
+        }
+
+        MethodCalls calls = getMethodCalls(method);
+        for (FieldCall fieldCall : calls.fieldCalls) {
+            String mockName = mocks.get(fieldCall.field);
+            if (mockName != null) {
+                stubs.add("org.mockito.Mockito.when(" + mockName + "." + fieldCall.methodName
+                        + fieldCall.parameterTypes.stream().map(StubDiscovery::getMatcher).collect(Collectors.joining(", ", "(", ")"))
+                        + ").thenReturn(" + values.getValue(fieldCall.returnType) + ");");
+            }
+        }
+        if (depth > 0) {
+            for (PsiMethod helperMethod : calls.helperMethods) {
+                collect(helperMethod, mocks, depth - 1, stubs, visited);
+            }
+        }
+    }
+
+    @NotNull
+    private MethodCalls getMethodCalls(@NotNull PsiMethod method) {
+        long stamp = method.getContainingFile().getModificationStamp();
+        MethodCalls calls = methodCalls.get(method);
+        if (calls != null && calls.stamp == stamp) {
+            return calls;
+        }
+
+        ProgressManager.checkCanceled();
+        PsiClass containingClass = Objects.requireNonNull(method.getContainingClass());
+        WalkingVisitor visitor = new WalkingVisitor(containingClass);
+        method.accept(visitor);
+        resolveCount.add(visitor.getResolveCount());
+
+        calls = new MethodCalls(stamp, visitor.getFieldCalls(), visitor.getHelperMethods());
+        methodCalls.put(method, calls);
+        return calls;
+    }
+
+    private static final class MethodCalls {
+        private final long stamp;
+        private final List<FieldCall> fieldCalls;
+        private final Collection<PsiMethod> helperMethods;
+
+        private MethodCalls(long stamp, @NotNull List<FieldCall> fieldCalls, @NotNull Collection<PsiMethod> helperMethods) {
+            this.stamp = stamp;
+            this.fieldCalls = fieldCalls;
+            this.helperMethods = helperMethods;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.psi.util.TypeConversionUtil;
+import com.vv.testrike.generatetest.TestClassModel.MethodTest;
+import com.vv.testrike.generatetest.TestClassModel.MockField;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collects what the test class of a production class needs. Must be called inside a read action,
+ * it does not modify any PSI. One analyzer may analyse several classes concurrently, and is meant to be
+ * kept for a whole generation run so the calls and value types it resolved are shared by all the classes.
+ */
+class TestClassAnalyzer {
+
+    private final ValueRegistry values = new ValueRegistry();
+    private final StubDiscovery stubDiscovery;
+    private final TestRunnerMode runnerMode;
+    private final Map<String, Boolean> topLevelClasses = new ConcurrentHashMap<>();
+
+    TestClassAnalyzer() {
+        this(StubDiscovery.DEFAULT_HELPER_DEPTH, TestRunnerMode.MOCKITO_EXTENSION);
+    }
+
+    /**
+     * @param helperDepth how deep the helper methods of a tested method are followed for stubs
+     * @param runnerMode the mode of the new test classes, {@link TestRunnerMode#MOCKITO_EXTENSION} becomes
+     *                   {@link TestRunnerMode#DIRECT_CONSTRUCTION} for the classes it suits
+     */
+    TestClassAnalyzer(int helperDepth, @NotNull TestRunnerMode runnerMode) {
+        stubDiscovery = new StubDiscovery(helperDepth, values);
+        this.runnerMode = runnerMode;
+    }
+
+    /**
+     * If the test class already exists, the model holds only what it lacks: the mock fields of the
+     * missing names and the tests of the methods it does not call with their number of parameters.
+     * A test class which constructs its subject directly gets only the tests.
+     * Stubs are discovered only for those methods, and the existing members are never changed.
+     */
+    @NotNull
+    TestClassModel analyze(@NotNull PsiClass psiClass, @NotNull TestLibraryAvailable testLibrary) {
+        String testClassName = psiClass.getName() + "Test";
+        return analyze(psiClass, testLibrary, testClassName, ExistingTestClass.find(psiClass, getPackageName(psiClass), testClassName));
+    }
+
+    /**
+     * Analyses the class for a new class of the given name, whether or not it exists already.
+     */
+    @NotNull
+    TestClassModel analyze(@NotNull PsiClass psiClass, @NotNull TestLibraryAvailable testLibrary, @NotNull String testClassName) {
+        return analyze(psiClass, testLibrary, testClassName, null);
+    }
+
+    @NotNull
+    private TestClassModel analyze(@NotNull PsiClass psiClass, @NotNull TestLibraryAvailable testLibrary,
+                                   @NotNull String testClassName, @Nullable ExistingTestClass existingTest) {
+        String className = Objects.requireNonNull(psiClass.getName());
+        String packageName = getPackageName(psiClass);
+
+        String injectName = existingTest == null || existingTest.getSubjectFieldName() == null
+                ? className.substring(0, 1).toLowerCase() + className.substring(1)
+                : existingTest.getSubjectFieldName();
+        String qualifiedName = psiClass.getQualifiedName();
+        MockField injectTarget = new MockField("private", qualifiedName == null ? className : qualifiedName, injectName);
+
+        List<MockField> mockFields = new ArrayList<>();
+        Map<PsiField, String> mocks = new HashMap<>();
+        addMockFields(psiClass, mockFields, mocks);
+        boolean fieldInjection = !mockFields.isEmpty();
+        addMockFieldsFromConstructor(psiClass, mockFields, mocks);
+
+        Set<String> testMethodNames = new HashSet<>();
+        List<MethodTest> methodTests = Stream.of(psiClass.getMethods())
+                .filter(method -> !method.isConstructor() && isPublicOrProtectedOrPackagePrivate(method))
+                .filter(method -> existingTest == null || !existingTest.isTested(method.getName(), method.getParameterList().getParametersCount()))
+                .map(method -> createMethodTest(method, mocks, existingTest, testMethodNames))
+                .collect(Collectors.toList());
+
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(psiClass.getProject());
+        SmartPsiElementPointer<PsiClass> pointer = pointerManager.createSmartPsiElementPointer(psiClass);
+        if (existingTest == null) {
+            TestRunnerMode mode = getRunnerMode(psiClass, testLibrary, fieldInjection);
+            return new TestClassModel(pointer, psiClass.getContainingFile().getModificationStamp(), packageName,
+                    testClassName, testLibrary, mode, mode != TestRunnerMode.SPRING_EXTENSION && ParallelSafety.isSafe(psiClass, null),
+                    injectTarget, mockFields, methodTests);
+        }
+
+        // a directly constructed subject gets its mocks from its constructor, annotated fields would not be used
+        boolean directConstruction = existingTest.isDirectConstruction();
+        mockFields.removeIf(mockField -> directConstruction || existingTest.hasField(mockField.getName()));
+        PsiClass testClass = existingTest.getTestClass();
+        return new TestClassModel(pointer, psiClass.getContainingFile().getModificationStamp(), packageName,
+                testClassName, testLibrary, directConstruction ? TestRunnerMode.DIRECT_CONSTRUCTION : TestRunnerMode.MOCKITO_EXTENSION,
+                ParallelSafety.isSafe(psiClass, testClass), injectTarget, mockFields, methodTests,
+                pointerManager.createSmartPsiElementPointer(testClass), testClass.getContainingFile().getModificationStamp(),
+                existingTest.getSubjectFieldName() == null, null);
+    }
+
+    /**
+     * Analyses the class for a new skeleton test class from its syntax tree alone, so it works during indexing.
+     * The injected members are recognized by the short names of their annotations, the types are taken as written
+     * together with the imports of the production file, and the tests get no stubs. An existing test class
+     * cannot be found without the index, so the test class is always new and never runs concurrently.
+     */
+    @NotNull
+    TestClassModel analyzeSkeleton(@NotNull PsiClass psiClass, @NotNull TestLibraryAvailable testLibrary) {
+        String className = Objects.requireNonNull(psiClass.getName());
+        String qualifiedName = psiClass.getQualifiedName();
+        MockField injectTarget = new MockField("private", qualifiedName == null ? className : qualifiedName,
+                className.substring(0, 1).toLowerCase() + className.substring(1));
+
+        List<MockField> mockFields = new ArrayList<>();
+        Stream.of(psiClass.getFields())
+                .filter(TestClassAnalyzer::hasInjectAnnotationName)
+                .forEach(field -> mockFields.add(createSkeletonMockField(getAccessModifier(field.getModifierList()), field)));
+        boolean fieldInjection = !mockFields.isEmpty();
+        List<PsiMethod> injectedConstructors = Stream.of(psiClass.getConstructors())
+                .filter(TestClassAnalyzer::hasInjectAnnotationName)
+                .collect(Collectors.toList());
+        injectedConstructors.forEach(constructor -> Stream.of(constructor.getParameterList().getParameters())
+                .forEach(parameter -> mockFields.add(createSkeletonMockField("private", parameter))));
+
+        Set<String> testMethodNames = new HashSet<>();
+        List<MethodTest> methodTests = Stream.of(psiClass.getMethods())
+                .filter(method -> !method.isConstructor() && isPublicOrProtectedOrPackagePrivate(method))
+                .map(method -> new MethodTest(method.getName(), createTestMethodName(method, null, testMethodNames),
+                        Collections.emptyList(), createSkeletonArguments(method), getSkeletonParameterTypes(method), Collections.emptySet(),
+                        method.hasModifierProperty(PsiModifier.PUBLIC), !PsiType.VOID.equals(method.getReturnType())))
+                .collect(Collectors.toList());
+
+        TestRunnerMode mode = runnerMode == TestRunnerMode.MOCKITO_EXTENSION && !fieldInjection && injectedConstructors.size() == 1
+                && testLibrary != TestLibraryAvailable.TESTNG && testLibrary != TestLibraryAvailable.NON
+                ? TestRunnerMode.DIRECT_CONSTRUCTION : runnerMode;
+        SmartPsiElementPointer<PsiClass> pointer = SmartPointerManager.getInstance(psiClass.getProject()).createSmartPsiElementPointer(psiClass);
+        return new TestClassModel(pointer, psiClass.getContainingFile().getModificationStamp(), getPackageName(psiClass),
+                className + "Test", testLibrary, mode, false, injectTarget, mockFields, methodTests,
+                null, 0, true, getImports(psiClass, mockFields, methodTests));
+    }
+
+    private static boolean hasInjectAnnotationName(@NotNull PsiModifierListOwner owner) {
+        PsiModifierList modifierList = owner.getModifierList();
+        return modifierList != null && Stream.of(modifierList.getAnnotations())
+                .map(PsiAnnotation::getNameReferenceElement)
+                .filter(Objects::nonNull)
+                .map(PsiJavaCodeReferenceElement::getReferenceName)
+                .anyMatch(name -> "Inject".equals(name) || "Autowired".equals(name));
+    }
+
+    @NotNull
+    private static MockField createSkeletonMockField(@NotNull String accessModifier, @NotNull PsiVariable variable) {
+        PsiTypeElement typeElement = variable.getTypeElement();
+        String type = typeElement == null ? CommonClassNames.JAVA_LANG_OBJECT : typeElement.getText();
+        return new MockField(accessModifier, type, Objects.requireNonNull(variable.getName()));
+    }
+
+    @NotNull
+    private static List<String> createSkeletonArguments(@NotNull PsiMethod method) {
+        return Stream.of(method.getParameterList().getParameters())
+                .map(parameter -> {
+                    PsiTypeElement typeElement = parameter.getTypeElement();
+                    return ValueRegistry.getUnresolvedValue(parameter.getType(),
+                            typeElement == null ? CommonClassNames.JAVA_LANG_OBJECT : typeElement.getText());
+                })
+                .collect(Collectors.toList());
+    }
+
+    @NotNull
+    private static List<String> getSkeletonParameterTypes(@NotNull PsiMethod method) {
+        return Stream.of(method.getParameterList().getParameters())
+                .map(parameter -> {
+                    PsiTypeElement typeElement = parameter.getTypeElement();
+                    return typeElement == null ? CommonClassNames.JAVA_LANG_OBJECT : typeElement.getText().replace("...", "[]");
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The on demand imports of the file of the class, and its single type imports of the classes the mock fields
+     * and the arguments are written with.
+     */
+    @NotNull
+    private static List<String> getImports(@NotNull PsiClass psiClass, @NotNull List<MockField> mockFields,
+                                           @NotNull List<MethodTest> methodTests) {
+        List<String> imports = new ArrayList<>();
+        PsiFile psiFile = psiClass.getContainingFile();
+        PsiImportList importList = psiFile instanceof PsiJavaFile ? ((PsiJavaFile) psiFile).getImportList() : null;
+        if (importList == null) {
+            return imports;
+        }
+        Set<String> usedNames = new HashSet<>();
+        mockFields.forEach(mockField -> usedNames.addAll(Arrays.asList(mockField.getType().split("\\W+"))));
+        methodTests.forEach(methodTest -> methodTest.getArguments()
+                .forEach(argument -> usedNames.addAll(Arrays.asList(argument.split("\\W+")))));
+        for (PsiImportStatement statement : importList.getImportStatements()) {
+            String qualifiedName = statement.getQualifiedName();
+            if (qualifiedName == null) {
+                continue;
+            }
+            if (statement.isOnDemand()) {
+                imports.add(qualifiedName + ".*");
+            } else if (usedNames.contains(qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1))) {
+                imports.add(qualifiedName);
+            }
+        }
+        return imports;
+    }
+
+    /**
+     * The class is constructed directly when it is injected only through one constructor and the test library
+     * creates a test instance per test method, so every test gets fresh mocks without a Mockito extension.
+     */
+    @NotNull
+    private TestRunnerMode getRunnerMode(@NotNull PsiClass psiClass, @NotNull TestLibraryAvailable testLibrary, boolean fieldInjection) {
+        if (runnerMode != TestRunnerMode.MOCKITO_EXTENSION || fieldInjection
+                || testLibrary == TestLibraryAvailable.TESTNG || testLibrary == TestLibraryAvailable.NON) {
+            return runnerMode;
+        }
+        long injectedConstructors = Stream.of(psiClass.getConstructors()).filter(this::containsAutowiredOrInjectAnnotation).count();
+        return injectedConstructors == 1 ? TestRunnerMode.DIRECT_CONSTRUCTION : runnerMode;
+    }
+
+    /**
+     * The number of references resolved by the stub discovery of the analyzer.
+     */
+    long getResolveCount() {
+        return stubDiscovery.getResolveCount();
+    }
+
+    /**
+     * The number of types the analyzer decided how to build a value of.
+     */
+    int getValueTypeCount() {
+        return values.getTypeCount();
+    }
+
+    @NotNull
+    static String getPackageName(@NotNull PsiClass psiClass) {
+        PsiFile psiFile = psiClass.getContainingFile();
+        if (psiFile instanceof PsiJavaFile) {
+            return ((PsiJavaFile) psiFile).getPackageName();
+        }
+        return "";
+    }
+
+    private boolean isPublicOrProtectedOrPackagePrivate(@NotNull PsiMethod method) {
+        PsiModifierList modifierList = method.getModifierList();
+
+        return modifierList.hasExplicitModifier("public")
+                || modifierList.hasExplicitModifier("protected")
+                || !modifierList.hasExplicitModifier("private");
+    }
+
+    @NotNull
+    private MethodTest createMethodTest(@NotNull PsiMethod method, @NotNull Map<PsiField, String> mocks,
+                                        @Nullable ExistingTestClass existingTest, @NotNull Set<String> testMethodNames) {
+        ProgressManager.checkCanceled();
+
+        List<String> givenStatements = stubDiscovery.discover(method, mocks);
+        List<String> arguments = createArguments(method);
+        Set<String> classNames = new HashSet<>();
+        Stream.concat(givenStatements.stream(), arguments.stream())
+                .forEach(text -> classNames.addAll(findClassNames(method.getProject(), text)));
+        return new MethodTest(method.getName(), createTestMethodName(method, existingTest, testMethodNames),
+                givenStatements, arguments, getParameterTypes(method), classNames,
+                method.hasModifierProperty(PsiModifier.PUBLIC), !PsiType.VOID.equals(method.getReturnType()));
+    }
+
+    /**
+     * The qualified names of the top level classes the qualified names of the text start with. The shortest prefix
+     * naming a class is taken, so {@code java.util.Collections.emptyList} gives {@code java.util.Collections} while
+     * a field access such as {@code config.MAX_SIZE} gives nothing.
+     */
+    @NotNull
+    private Set<String> findClassNames(@NotNull Project project, @NotNull String text) {
+        Set<String> classNames = new HashSet<>();
+        for (String qualifiedName : ImportCollector.findQualifiedNames(text)) {
+            for (int end = qualifiedName.indexOf('.', qualifiedName.indexOf('.') + 1); ; end = qualifiedName.indexOf('.', end + 1)) {
+                String prefix = end < 0 ? qualifiedName : qualifiedName.substring(0, end);
+                if (isTopLevelClass(project, prefix)) {
+                    classNames.add(prefix);
+                    break;
+                }
+                if (end < 0) {
+                    break;
+                }
+            }
+        }
+        return classNames;
+    }
+
+    private boolean isTopLevelClass(@NotNull Project project, @NotNull String qualifiedName) {
+        return topLevelClasses.computeIfAbsent(qualifiedName, name -> {
+            PsiClass psiClass = JavaPsiFacade.getInstance(project).findClass(name, GlobalSearchScope.allScope(project));
+            return psiClass != null && psiClass.getContainingClass() == null;
+        });
+    }
+
+    /**
+     * A test method name unique among the names given so far and the methods of the existing test class.
+     */
+    @NotNull
+    private static String createTestMethodName(@NotNull PsiMethod method, @Nullable ExistingTestClass existingTest,
+                                               @NotNull Set<String> testMethodNames) {
+        String methodName = method.getName();
+        String capitalizedMethodName = methodName.substring(0, 1).toUpperCase() + methodName.substring(1);
+        String testMethodName = "test" + capitalizedMethodName + "_Should_When";
+        for (int i = 2; !testMethodNames.add(testMethodName) || existingTest != null && existingTest.hasMethod(testMethodName); i++) {
+            testMethodName = "test" + capitalizedMethodName + i + "_Should_When";
+        }
+        return testMethodName;
+    }
+
+    /**
+     * The canonical texts of the parameter types, a variable arity parameter as an array. A type mentioning
+     * a type parameter is erased, the type parameter is not known outside the method or its class.
+     */
+    @NotNull
+    private static List<String> getParameterTypes(@NotNull PsiMethod method) {
+        return Stream.of(method.getParameterList().getParameters())
+                .map(PsiParameter::getType)
+                .map(type -> type instanceof PsiEllipsisType ? ((PsiEllipsisType) type).toArrayType() : type)
+                .map(type -> (mentionsTypeParameter(type) ? TypeConversionUtil.erasure(type) : type).getCanonicalText())
+                .collect(Collectors.toList());
+    }
+
+    private static boolean mentionsTypeParameter(@Nullable PsiType type) {
+        if (type instanceof PsiArrayType) {
+            return mentionsTypeParameter(((PsiArrayType) type).getComponentType());
+        }
+        if (type instanceof PsiWildcardType) {
+            return mentionsTypeParameter(((PsiWildcardType) type).getBound());
+        }
+        if (type instanceof PsiClassType) {
+            return ((PsiClassType) type).resolve() instanceof PsiTypeParameter
+                    || Stream.of(((PsiClassType) type).getParameters()).anyMatch(TestClassAnalyzer::mentionsTypeParameter);
+        }
+        return false;
+    }
+
+    @NotNull
+    private List<String> createArguments(@NotNull PsiMethod method) {
+        return Stream.of(method.getParameterList().getParameters())
+                .map(psiParameter -> values.getValue(psiParameter.getType()))
+                .collect(Collectors.toList());
+    }
+
+    private void addMockFields(PsiClass psiClass, List<MockField> mockFields, Map<PsiField, String> mocks) {
+        Stream.of(psiClass.getAllFields())
+                .filter(this::containsAutowiredOrInjectAnnotation)
+                .forEach(psiField -> {
+                    mockFields.add(createMockField(getAccessModifier(psiField.getModifierList()), psiField));
+                    mocks.put(psiField, psiField.getName());
+                });
+    }
+
+    private void addMockFieldsFromConstructor(PsiClass psiClass, List<MockField> mockFields, Map<PsiField, String> mocks) {
+        Stream.of(psiClass.getConstructors())
+                .filter(this::containsAutowiredOrInjectAnnotation)
+                .forEach(constructor -> {
+                    Stream.of(constructor.getParameterList().getParameters())
+                            .forEach(parameter -> mockFields.add(createMockField("private", parameter)));
+                    mocks.putAll(findFieldsAssignedFromParameters(constructor));
+                });
+    }
+
+    /**
+     * The fields a constructor assigns its parameters to, with the name of the parameter.
+     */
+    @NotNull
+    private Map<PsiField, String> findFieldsAssignedFromParameters(@NotNull PsiMethod constructor) {
+        Map<PsiField, String> result = new HashMap<>();
+        constructor.accept(new JavaRecursiveElementWalkingVisitor() {
+            @Override
+            public void visitAssignmentExpression(PsiAssignmentExpression expression) {
+                super.visitAssignmentExpression(expression);
+                PsiExpression lExpression = PsiUtil.skipParenthesizedExprDown(expression.getLExpression());
+                PsiExpression rExpression = PsiUtil.skipParenthesizedExprDown(expression.getRExpression());
+                if (!(lExpression instanceof PsiReferenceExpression) || !(rExpression instanceof PsiReferenceExpression)) {
+                    return;
+                }
+                PsiElement field = ((PsiReferenceExpression) lExpression).resolve();
+                PsiElement parameter = ((PsiReferenceExpression) rExpression).resolve();
+                if (field instanceof PsiField && parameter instanceof PsiParameter
+                        && constructor.equals(((PsiParameter) parameter).getDeclarationScope())) {
+                    result.put((PsiField) field, ((PsiParameter) parameter).getName());
+                }
+            }
+        });
+        return result;
+    }
+
+    private boolean containsAutowiredOrInjectAnnotation(PsiModifierListOwner psiModifierListOwner) {
+        return Stream.of(psiModifierListOwner.getAnnotations())
+                .anyMatch(this::annotationContainsAutowiredOrInject);
+    }
+
+    private boolean annotationContainsAutowiredOrInject(PsiAnnotation annotation) {
+        return "org.springframework.beans.factory.annotation.Autowired".equals(annotation.getQualifiedName())
+                || "javax.inject.Inject".equals(annotation.getQualifiedName());
+    }
+
+    private String getAccessModifier(PsiModifierList modifierList) {
+        if (Objects.requireNonNull(modifierList).hasExplicitModifier("public")) {
+            return "public";
+        } else if (Objects.requireNonNull(modifierList).hasExplicitModifier("protected")) {
+            return "protected";
+        } else if (Objects.requireNonNull(modifierList).hasExplicitModifier("private")) {
+            return "private";
+        } else {
+            return "";
+        }
+    }
+
+    @NotNull
+    private MockField createMockField(String accessModifier, PsiVariable psiVariable) {
+        return new MockField(accessModifier, psiVariable.getType().getCanonicalText(), Objects.requireNonNull(psiVariable.getName()));
+    }
+}
@@ -0,0 +1,197 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.impl.file.JavaDirectoryServiceImpl;
+import com.intellij.util.IncorrectOperationException;
+import com.vv.testrike.generatetest.TestClassModel.MethodTest;
+import com.vv.testrike.statistics.GenerationRun;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Creates the test class of one production class from its {@link TestClassModel}, or adds the missing
+ * members to the test class which already exists. The file is rendered as text and parsed once,
+ * then only the new file is reformatted.
+ * Must be called inside a write command action.
+ */
+class TestClassGenerator {
+
+    private final Project project;
+    private final TestClassRenderer renderer;
+
+    TestClassGenerator(@NotNull Project project) {
+        this.project = project;
+        this.renderer = new TestClassRenderer();
+    }
+
+    @NotNull
+    PsiClass generate(@NotNull TestClassModel model, @NotNull PsiDirectory testDirectory, @NotNull GenerationRun run) {
+        TestValidation validation = model.getValidation();
+        return generate(model, testDirectory, run, validation == null ? renderer::render : validated -> validation.getText());
+    }
+
+    /**
+     * Creates the JMH benchmark class of the model, which is analysed for a class named like the benchmark.
+     */
+    @NotNull
+    PsiClass generateBenchmark(@NotNull TestClassModel model, @NotNull PsiDirectory benchmarkDirectory, @NotNull GenerationRun run) {
+        return generate(model, benchmarkDirectory, run, new BenchmarkRenderer()::render);
+    }
+
+    @NotNull
+    private PsiClass generate(@NotNull TestClassModel model, @NotNull PsiDirectory testDirectory, @NotNull GenerationRun run,
+                              @NotNull Function<TestClassModel, String> fileRenderer) {
+        JavaDirectoryServiceImpl.checkCreateClassOrInterface(testDirectory, model.getTestClassName());
+
+        String content = run.time("render", () -> fileRenderer.apply(model));
+        PsiJavaFile psiJavaTestFile = run.time("parse", () -> createTestFile(model, content));
+        if (model.getValidation() != null && !model.getValidation().getRepairs().isEmpty()) {
+            // the repairs are written with qualified class references
+            run.time("shortenReferences", () -> JavaCodeStyleManager.getInstance(project).shortenClassReferences(psiJavaTestFile));
+        }
+        run.time("reformat", () -> CodeStyleManager.getInstance(project).reformat(psiJavaTestFile));
+        PsiElement addedElement = run.time("add", () -> testDirectory.add(psiJavaTestFile));
+        run.count(GenerationRun.ELEMENTS_ADDED, 1);
+
+        if (addedElement instanceof PsiJavaFile) {
+            return ((PsiJavaFile) addedElement).getClasses()[0];
+        } else {
+            PsiFile containingFile = addedElement.getContainingFile();
+            throw new IncorrectOperationException("Selected class file name '" +
+                    containingFile.getName() + "' mapped to not java file type '" +
+                    containingFile.getFileType().getDescription() + "'");
+        }
+    }
+
+    /**
+     * Adds the members of the model to its existing test class: the fields after the last field,
+     * the methods at the end. Only the added members are reformatted and get imports, the rest
+     * of the test class is left as it is, except for the concurrent execution annotation of a class
+     * whose tests may run in parallel.
+     */
+    @NotNull
+    PsiClass addMembers(@NotNull TestClassModel model, @NotNull GenerationRun run) {
+        PsiClass testClass = model.getExistingTestClass() == null ? null : model.getExistingTestClass().getElement();
+        if (testClass == null) {
+            throw new IncorrectOperationException("Test class " + model.getTestClassName() + " no longer exists");
+        }
+
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        JavaCodeStyleManager javaCodeStyleManager = JavaCodeStyleManager.getInstance(project);
+        CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
+        PsiField[] fields = testClass.getFields();
+        PsiElement fieldAnchor = fields.length == 0 ? null : fields[fields.length - 1];
+
+        TestValidation validation = model.getValidation();
+        List<String> members = validation == null ? run.time("render", () -> renderer.renderMembers(model)) : validation.getMembers();
+        for (String member : members) {
+            PsiElement added;
+            if (member.endsWith("}")) {
+                PsiMethod method = run.time("parse", () -> factory.createMethodFromText(member, testClass));
+                added = run.time("add", () -> testClass.add(method));
+            } else {
+                PsiField field = run.time("parse", () -> factory.createFieldFromText(member, testClass));
+                PsiElement anchor = fieldAnchor;
+                added = run.time("add", () -> anchor == null ? testClass.addBefore(field, firstMember(testClass)) : testClass.addAfter(field, anchor));
+                fieldAnchor = added;
+            }
+            PsiElement shortened = run.time("shortenReferences", () -> javaCodeStyleManager.shortenClassReferences(added));
+            run.time("reformat", () -> codeStyleManager.reformat(shortened));
+            run.count(GenerationRun.ELEMENTS_ADDED, 1);
+        }
+        if (TestClassRenderer.isConcurrent(model) && testClass.getModifierList() != null
+                && testClass.getModifierList().findAnnotation(TestClassRenderer.EXECUTION) == null) {
+            PsiAnnotation execution = testClass.getModifierList()
+                    .addAnnotation(TestClassRenderer.EXECUTION + "(" + TestClassRenderer.CONCURRENT + ")");
+            run.time("shortenReferences", () -> javaCodeStyleManager.shortenClassReferences(execution));
+            run.count(GenerationRun.ELEMENTS_ADDED, 1);
+        }
+        return testClass;
+    }
+
+    /**
+     * Completes a test class generated from a skeleton: the stubbing statements of the model, as repaired by its
+     * validation if it has one, are added at the start of the test methods of the same names which have none yet,
+     * after the call of the setUp() which creates the mocks if the method starts with it.
+     * Only the completed methods are reformatted.
+     *
+     * @return the number of completed test methods
+     */
+    int addGivenStatements(@NotNull PsiClass testClass, @NotNull TestClassModel model, @NotNull GenerationRun run) {
+        PsiElementFactory factory = JavaPsiFacade.getElementFactory(project);
+        JavaCodeStyleManager javaCodeStyleManager = JavaCodeStyleManager.getInstance(project);
+        CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
+        TestValidation validation = model.getValidation();
+        int completed = 0;
+        for (int i = 0; i < model.getMethodTests().size(); i++) {
+            MethodTest methodTest = model.getMethodTests().get(i);
+            List<String> givenStatements = validation == null ? methodTest.getGivenStatements()
+                    : getStatements(factory, validation.getMembers().get(i), testClass);
+            PsiMethod[] methods = testClass.findMethodsByName(methodTest.getTestMethodName(), false);
+            PsiCodeBlock body = methods.length == 0 ? null : methods[0].getBody();
+            if (givenStatements.isEmpty() || body == null || body.getLBrace() == null
+                    || body.getText().contains(TestClassRenderer.GIVEN_COMMENT)) {
+                continue;
+            }
+
+            String given = "{\n" + TestClassRenderer.GIVEN_COMMENT + "\n" + String.join("\n", givenStatements) + "\n\n}";
+            PsiCodeBlock givenBlock = run.time("parse", () -> factory.createCodeBlockFromText(given, body));
+            PsiElement first = givenBlock.getFirstBodyElement();
+            PsiElement last = givenBlock.getLastBodyElement();
+            if (first == null || last == null) {
+                continue;
+            }
+            PsiStatement[] statements = body.getStatements();
+            PsiElement anchor = statements.length > 0 && TestClassRenderer.SET_UP_CALL.equals(statements[0].getText())
+                    ? statements[0] : body.getLBrace();
+            run.time("add", () -> body.addRangeAfter(first, last, anchor));
+            PsiElement shortened = run.time("shortenReferences", () -> javaCodeStyleManager.shortenClassReferences(methods[0]));
+            run.time("reformat", () -> codeStyleManager.reformat(shortened));
+            run.count(GenerationRun.STUBS, givenStatements.size());
+            run.count(GenerationRun.ELEMENTS_ADDED, givenStatements.size());
+            completed++;
+        }
+        return completed;
+    }
+
+    /**
+     * The statements of a test method holding only the checked stubs, see {@link GeneratedTestValidator#validateGivenStatements}.
+     */
+    @NotNull
+    private static List<String> getStatements(@NotNull PsiElementFactory factory, @NotNull String method, @NotNull PsiClass testClass) {
+        PsiCodeBlock body = method.isEmpty() ? null : factory.createMethodFromText(method, testClass).getBody();
+        return body == null ? Collections.emptyList()
+                : Stream.of(body.getStatements()).map(PsiElement::getText).collect(Collectors.toList());
+    }
+
+    @Nullable
+    private static PsiElement firstMember(@NotNull PsiClass psiClass) {
+        PsiElement lBrace = psiClass.getLBrace();
+        return lBrace == null ? null : lBrace.getNextSibling();
+    }
+
+    @NotNull
+    private PsiJavaFile createTestFile(@NotNull TestClassModel model, @NotNull String content) {
+        String testFileName = model.getTestClassName() + "." + StdFileTypes.JAVA.getDefaultExtension();
+
+        PsiFile psiTestFile = PsiFileFactory.getInstance(project).createFileFromText(testFileName, StdFileTypes.JAVA, content);
+        if (!(psiTestFile instanceof PsiJavaFile)) {
+            throw new IncorrectOperationException("This template did not produce a Java class or an interface\n" + psiTestFile.getText());
+        }
+        PsiJavaFile psiJavaTestFile = (PsiJavaFile) psiTestFile;
+        if (psiJavaTestFile.getClasses().length == 0) {
+            throw new IncorrectOperationException("This template did not produce a Java class or an interface\n" + psiTestFile.getText());
+        }
+        return psiJavaTestFile;
+    }
+}
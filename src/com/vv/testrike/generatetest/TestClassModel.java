@@ -0,0 +1,317 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.SmartPsiElementPointer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Everything the test class of a production class is generated from. It is computed in a read action
+ * by {@link TestClassAnalyzer} and holds no PSI except the pointer to the analysed class,
+ * so it can be passed safely between threads.
+ */
+final class TestClassModel {
+
+    private final SmartPsiElementPointer<PsiClass> productionClass;
+    private final long productionFileStamp;
+    private final String packageName;
+    private final String testClassName;
+    private final TestLibraryAvailable testLibrary;
+    private final TestRunnerMode runnerMode;
+    private final boolean parallelSafe;
+    private final MockField injectTarget;
+    private final List<MockField> mockFields;
+    private final List<MethodTest> methodTests;
+    private final SmartPsiElementPointer<PsiClass> existingTestClass;
+    private final long existingTestFileStamp;
+    private final boolean addInjectTarget;
+    private final List<String> skeletonImports;
+    private final TestValidation validation;
+
+    TestClassModel(@NotNull SmartPsiElementPointer<PsiClass> productionClass, long productionFileStamp,
+                   @NotNull String packageName, @NotNull String testClassName,
+                   @NotNull TestLibraryAvailable testLibrary, @NotNull TestRunnerMode runnerMode, boolean parallelSafe,
+                   @NotNull MockField injectTarget, @NotNull List<MockField> mockFields, @NotNull List<MethodTest> methodTests) {
+        this(productionClass, productionFileStamp, packageName, testClassName, testLibrary, runnerMode, parallelSafe,
+                injectTarget, mockFields, methodTests, null, 0, true, null);
+    }
+
+    /**
+     * @param runnerMode how the subject and the mocks are created; with {@link TestRunnerMode#DIRECT_CONSTRUCTION}
+     *                   the mock fields are the constructor arguments in their order
+     * @param parallelSafe whether the tests of the class may run concurrently, see {@link ParallelSafety}
+     * @param existingTestClass the test class the members are added to, or null if a new test class is created
+     * @param addInjectTarget whether the {@code @InjectMocks} field is added
+     * @param skeletonImports the imports of the production file if the model is a skeleton, see {@link #isSkeleton()}
+     */
+    TestClassModel(@NotNull SmartPsiElementPointer<PsiClass> productionClass, long productionFileStamp,
+                   @NotNull String packageName, @NotNull String testClassName,
+                   @NotNull TestLibraryAvailable testLibrary, @NotNull TestRunnerMode runnerMode, boolean parallelSafe,
+                   @NotNull MockField injectTarget, @NotNull List<MockField> mockFields, @NotNull List<MethodTest> methodTests,
+                   @Nullable SmartPsiElementPointer<PsiClass> existingTestClass, long existingTestFileStamp,
+                   boolean addInjectTarget, @Nullable List<String> skeletonImports) {
+        this(productionClass, productionFileStamp, packageName, testClassName, testLibrary, runnerMode, parallelSafe,
+                injectTarget, mockFields, methodTests, existingTestClass, existingTestFileStamp, addInjectTarget, skeletonImports, null);
+    }
+
+    private TestClassModel(@NotNull SmartPsiElementPointer<PsiClass> productionClass, long productionFileStamp,
+                           @NotNull String packageName, @NotNull String testClassName,
+                           @NotNull TestLibraryAvailable testLibrary, @NotNull TestRunnerMode runnerMode, boolean parallelSafe,
+                           @NotNull MockField injectTarget, @NotNull List<MockField> mockFields, @NotNull List<MethodTest> methodTests,
+                           @Nullable SmartPsiElementPointer<PsiClass> existingTestClass, long existingTestFileStamp,
+                           boolean addInjectTarget, @Nullable List<String> skeletonImports, @Nullable TestValidation validation) {
+        this.productionClass = productionClass;
+        this.productionFileStamp = productionFileStamp;
+        this.packageName = packageName;
+        this.testClassName = testClassName;
+        this.testLibrary = testLibrary;
+        this.runnerMode = runnerMode;
+        this.parallelSafe = parallelSafe;
+        this.injectTarget = injectTarget;
+        this.mockFields = Collections.unmodifiableList(mockFields);
+        this.methodTests = Collections.unmodifiableList(methodTests);
+        this.existingTestClass = existingTestClass;
+        this.existingTestFileStamp = existingTestFileStamp;
+        this.addInjectTarget = addInjectTarget;
+        this.skeletonImports = skeletonImports == null ? null : Collections.unmodifiableList(skeletonImports);
+        this.validation = validation;
+    }
+
+    /**
+     * The same model with the checked and repaired text of its new test class.
+     */
+    @NotNull
+    TestClassModel withValidation(@NotNull TestValidation validation) {
+        return new TestClassModel(productionClass, productionFileStamp, packageName, testClassName, testLibrary, runnerMode,
+                parallelSafe, injectTarget, mockFields, methodTests, existingTestClass, existingTestFileStamp, addInjectTarget,
+                skeletonImports, validation);
+    }
+
+    /**
+     * The result of checking the new test class before it is added, or null if it was not checked.
+     */
+    @Nullable
+    TestValidation getValidation() {
+        return validation;
+    }
+
+    @NotNull
+    SmartPsiElementPointer<PsiClass> getProductionClass() {
+        return productionClass;
+    }
+
+    /**
+     * The modification stamp of the production file at the time of the analysis.
+     */
+    long getProductionFileStamp() {
+        return productionFileStamp;
+    }
+
+    @NotNull
+    String getPackageName() {
+        return packageName;
+    }
+
+    @NotNull
+    String getTestClassName() {
+        return testClassName;
+    }
+
+    /**
+     * The test library of the module the test class is generated into.
+     */
+    @NotNull
+    TestLibraryAvailable getTestLibrary() {
+        return testLibrary;
+    }
+
+    @NotNull
+    TestRunnerMode getRunnerMode() {
+        return runnerMode;
+    }
+
+    /**
+     * Whether the tests of the class may run concurrently with each other and with other tests.
+     */
+    boolean isParallelSafe() {
+        return parallelSafe;
+    }
+
+    @NotNull
+    MockField getInjectTarget() {
+        return injectTarget;
+    }
+
+    @NotNull
+    List<MockField> getMockFields() {
+        return mockFields;
+    }
+
+    @NotNull
+    List<MethodTest> getMethodTests() {
+        return methodTests;
+    }
+
+    /**
+     * The test class which already exists for the production class, or null if a new one is created.
+     */
+    @Nullable
+    SmartPsiElementPointer<PsiClass> getExistingTestClass() {
+        return existingTestClass;
+    }
+
+    /**
+     * The modification stamp of the existing test file at the time of the analysis.
+     */
+    long getExistingTestFileStamp() {
+        return existingTestFileStamp;
+    }
+
+    boolean isAddInjectTarget() {
+        return addInjectTarget;
+    }
+
+    /**
+     * Whether the model was analysed during indexing without resolving anything: the types are written as in
+     * the production file, the arguments are defaults or typed nulls, and the tests have no stubs yet.
+     */
+    boolean isSkeleton() {
+        return skeletonImports != null;
+    }
+
+    /**
+     * The imports of the production file, which the types of a skeleton need; empty if it is not a skeleton.
+     */
+    @NotNull
+    List<String> getSkeletonImports() {
+        return skeletonImports == null ? Collections.emptyList() : skeletonImports;
+    }
+
+    /**
+     * Whether the model holds nothing to add to the existing test class.
+     */
+    boolean isUpToDate() {
+        return existingTestClass != null && !addInjectTarget && mockFields.isEmpty() && methodTests.isEmpty();
+    }
+
+    static final class MockField {
+        private final String accessModifier;
+        private final String type;
+        private final String name;
+
+        MockField(@NotNull String accessModifier, @NotNull String type, @NotNull String name) {
+            this.accessModifier = accessModifier;
+            this.type = type;
+            this.name = name;
+        }
+
+        /**
+         * The access modifier keyword, or an empty string for package private.
+         */
+        @NotNull
+        String getAccessModifier() {
+            return accessModifier;
+        }
+
+        /**
+         * The canonical text of the field type, or the text it is written with in a skeleton.
+         */
+        @NotNull
+        String getType() {
+            return type;
+        }
+
+        @NotNull
+        String getName() {
+            return name;
+        }
+    }
+
+    static final class MethodTest {
+        private final String methodName;
+        private final String testMethodName;
+        private final List<String> givenStatements;
+        private final List<String> arguments;
+        private final List<String> parameterTypes;
+        private final Set<String> classNames;
+        private final boolean publicMethod;
+        private final boolean returnsValue;
+
+        MethodTest(@NotNull String methodName, @NotNull String testMethodName,
+                   @NotNull List<String> givenStatements, @NotNull List<String> arguments, @NotNull List<String> parameterTypes,
+                   @NotNull Set<String> classNames, boolean publicMethod, boolean returnsValue) {
+            this.methodName = methodName;
+            this.testMethodName = testMethodName;
+            this.givenStatements = Collections.unmodifiableList(givenStatements);
+            this.arguments = Collections.unmodifiableList(arguments);
+            this.parameterTypes = Collections.unmodifiableList(parameterTypes);
+            this.classNames = Collections.unmodifiableSet(classNames);
+            this.publicMethod = publicMethod;
+            this.returnsValue = returnsValue;
+        }
+
+        /**
+         * The name of the tested production method.
+         */
+        @NotNull
+        String getMethodName() {
+            return methodName;
+        }
+
+        @NotNull
+        String getTestMethodName() {
+            return testMethodName;
+        }
+
+        /**
+         * The stubbing statements of the mocks the tested method calls.
+         */
+        @NotNull
+        List<String> getGivenStatements() {
+            return givenStatements;
+        }
+
+        /**
+         * The argument texts the tested method is called with.
+         */
+        @NotNull
+        List<String> getArguments() {
+            return arguments;
+        }
+
+        /**
+         * The types of the parameters the arguments are passed to, which a field holding an argument can be declared with.
+         */
+        @NotNull
+        List<String> getParameterTypes() {
+            return parameterTypes;
+        }
+
+        /**
+         * The qualified names of the top level classes the given statements and the arguments refer to,
+         * the only names in them that may be shortened to an import.
+         */
+        @NotNull
+        Set<String> getClassNames() {
+            return classNames;
+        }
+
+        /**
+         * Whether the tested method is public.
+         */
+        boolean isPublicMethod() {
+            return publicMethod;
+        }
+
+        /**
+         * Whether the tested method returns a value, i.e. is not void.
+         */
+        boolean isReturnsValue() {
+            return returnsValue;
+        }
+    }
+}
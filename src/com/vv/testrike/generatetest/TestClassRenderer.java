@@ -0,0 +1,244 @@
+package com.vv.testrike.generatetest;
+
+import com.vv.testrike.generatetest.TestClassModel.MethodTest;
+import com.vv.testrike.generatetest.TestClassModel.MockField;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Renders the whole text of a test file from a {@link TestClassModel} in one pass.
+ * The class references are shortened and their imports collected while rendering,
+ * so the text needs no import optimization after it is parsed.
+ */
+class TestClassRenderer {
+
+    private static final String INDENT = "    ";
+    static final String EXECUTION = "org.junit.jupiter.api.parallel.Execution";
+    static final String CONCURRENT = "org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT";
+    static final String GIVEN_COMMENT = "//  given";
+    static final String SET_UP_CALL = "setUp();";
+    private static final String TEST_CASE = "junit.framework.TestCase";
+
+    @NotNull
+    String render(@NotNull TestClassModel model) {
+        ImportCollector imports = new ImportCollector(model.getPackageName());
+
+        StringBuilder body = new StringBuilder();
+        renderRunner(model, imports, body);
+        body.append("public class ").append(model.getTestClassName());
+        if (model.getTestLibrary() == TestLibraryAvailable.JUNIT_3) {
+            body.append(" extends ").append(imports.shorten(TEST_CASE));
+        }
+        body.append(" {\n");
+
+        if (model.getRunnerMode() == TestRunnerMode.DIRECT_CONSTRUCTION) {
+            model.getMockFields().forEach(mockField -> renderMockCreation(mockField, imports, body));
+            renderConstruction(model, imports, body);
+        } else {
+            renderInjectTarget(model, imports, body);
+            model.getMockFields().forEach(mockField -> renderField(mockField, "org.mockito.Mock", imports, body));
+            renderMockInitialization(model, imports, body);
+        }
+        boolean callSetUp = model.getRunnerMode() == TestRunnerMode.MOCKITO_EXTENSION && model.getTestLibrary() == TestLibraryAvailable.NON;
+        model.getMethodTests().forEach(methodTest -> renderMethod(model, methodTest, callSetUp, imports, body));
+        body.append("}\n");
+
+        StringBuilder text = new StringBuilder();
+        if (!model.getPackageName().isEmpty()) {
+            text.append("package ").append(model.getPackageName()).append(";\n\n");
+        }
+        SortedSet<String> importedNames = imports.getImports();
+        addSkeletonImports(model, importedNames);
+        importedNames.forEach(qualifiedName -> text.append("import ").append(qualifiedName).append(";\n"));
+        if (!importedNames.isEmpty()) {
+            text.append("\n");
+        }
+        return text.append(body).toString();
+    }
+
+    /**
+     * Adds the imports of the production file which the types of a skeleton are written against,
+     * except those which would clash with a class the test imports already.
+     */
+    private static void addSkeletonImports(@NotNull TestClassModel model, @NotNull SortedSet<String> importedNames) {
+        Set<String> simpleNames = importedNames.stream().map(TestClassRenderer::getSimpleName).collect(Collectors.toSet());
+        for (String skeletonImport : model.getSkeletonImports()) {
+            String simpleName = getSimpleName(skeletonImport);
+            if (simpleName.equals("*") || simpleNames.add(simpleName)) {
+                importedNames.add(skeletonImport);
+            }
+        }
+    }
+
+    @NotNull
+    private static String getSimpleName(@NotNull String qualifiedName) {
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Renders the fields and methods the model adds to an existing test class, with qualified class references.
+     */
+    @NotNull
+    List<String> renderMembers(@NotNull TestClassModel model) {
+        ImportCollector imports = ImportCollector.keepingQualifiedNames();
+        List<String> members = new ArrayList<>();
+        if (model.isAddInjectTarget()) {
+            members.add(render(text -> renderInjectTarget(model, imports, text)));
+        }
+        model.getMockFields().forEach(mockField -> members.add(render(text -> renderField(mockField, "org.mockito.Mock", imports, text))));
+        model.getMethodTests().forEach(methodTest -> members.add(render(text -> renderMethod(model, methodTest, false, imports, text))));
+        return members;
+    }
+
+    @NotNull
+    private static String render(@NotNull Consumer<StringBuilder> renderer) {
+        StringBuilder text = new StringBuilder();
+        renderer.accept(text);
+        return text.toString().trim();
+    }
+
+    /**
+     * Renders the annotation which runs the test with the Spring test context or with Mockito, as the test library
+     * supports it. A test which creates its subject itself needs none, and JUnit 3 or no test library have no
+     * Mockito runner, see {@link #renderMockInitialization}.
+     */
+    private void renderRunner(@NotNull TestClassModel model, @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        TestLibraryAvailable testLibrary = model.getTestLibrary();
+        if (isConcurrent(model)) {
+            text.append("@").append(imports.shorten(EXECUTION)).append("(").append(imports.shorten(CONCURRENT)).append(")\n");
+        }
+        switch (model.getRunnerMode()) {
+            case SPRING_EXTENSION:
+                renderRunnerAnnotation("org.junit.jupiter.api.extension.ExtendWith", "org.springframework.test.context.junit.jupiter.SpringExtension", imports, text);
+                break;
+            case MOCKITO_EXTENSION:
+                if (testLibrary == TestLibraryAvailable.JUNIT_JUPITER) {
+                    renderRunnerAnnotation("org.junit.jupiter.api.extension.ExtendWith", "org.mockito.junit.jupiter.MockitoExtension", imports, text);
+                } else if (testLibrary == TestLibraryAvailable.JUNIT_4) {
+                    renderRunnerAnnotation("org.junit.runner.RunWith", "org.mockito.junit.MockitoJUnitRunner", imports, text);
+                } else if (testLibrary == TestLibraryAvailable.TESTNG) {
+                    renderRunnerAnnotation("org.testng.annotations.Listeners", "org.mockito.testng.MockitoTestNGListener", imports, text);
+                }
+                break;
+            case DIRECT_CONSTRUCTION:
+                break;
+        }
+    }
+
+    /**
+     * Whether the test class is marked to run concurrently, which only JUnit Jupiter supports per class.
+     */
+    static boolean isConcurrent(@NotNull TestClassModel model) {
+        return model.isParallelSafe() && model.getTestLibrary() == TestLibraryAvailable.JUNIT_JUPITER;
+    }
+
+    /**
+     * Renders the setUp() which creates the mocks and the subject when no Mockito runner does it: in the
+     * {@code TestCase} of JUnit 3, or without a test library called first by every test method of the new class.
+     */
+    private static void renderMockInitialization(@NotNull TestClassModel model, @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        TestLibraryAvailable testLibrary = model.getTestLibrary();
+        if (model.getRunnerMode() != TestRunnerMode.MOCKITO_EXTENSION
+                || testLibrary != TestLibraryAvailable.JUNIT_3 && testLibrary != TestLibraryAvailable.NON) {
+            return;
+        }
+        text.append("\n");
+        if (testLibrary == TestLibraryAvailable.JUNIT_3) {
+            text.append(INDENT).append("@Override\n")
+                    .append(INDENT).append("protected void setUp() throws Exception {\n")
+                    .append(INDENT).append(INDENT).append("super.setUp();\n");
+        } else {
+            text.append(INDENT).append("public void setUp() {\n");
+        }
+        text.append(INDENT).append(INDENT).append(imports.shorten("org.mockito.MockitoAnnotations.initMocks")).append("(this);\n")
+                .append(INDENT).append("}\n");
+    }
+
+    private static void renderRunnerAnnotation(@NotNull String annotation, @NotNull String runnerClass,
+                                               @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        text.append("@").append(imports.shorten(annotation)).append("(").append(imports.shorten(runnerClass)).append(".class)\n");
+    }
+
+    private static void renderMockCreation(@NotNull MockField mockField, @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        String type = imports.shorten(mockField.getType());
+        text.append("\n")
+                .append(INDENT).append("private final ").append(type).append(" ").append(mockField.getName())
+                .append(" = ").append(imports.shorten("org.mockito.Mockito.mock")).append("(").append(erasure(type)).append(".class);\n");
+    }
+
+    private static void renderConstruction(@NotNull TestClassModel model, @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        MockField subject = model.getInjectTarget();
+        String type = imports.shorten(subject.getType());
+        text.append("\n")
+                .append(INDENT).append("private final ").append(type).append(" ").append(subject.getName())
+                .append(" = new ").append(type).append("(")
+                .append(model.getMockFields().stream().map(MockField::getName).collect(Collectors.joining(", "))).append(");\n");
+    }
+
+    @NotNull
+    private static String erasure(@NotNull String type) {
+        int typeArguments = type.indexOf('<');
+        return typeArguments < 0 ? type : type.substring(0, typeArguments);
+    }
+
+    private void renderInjectTarget(@NotNull TestClassModel model, @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        renderField(model.getInjectTarget(), "org.mockito.InjectMocks", imports, text);
+    }
+
+    private void renderField(@NotNull MockField mockField, @NotNull String annotation, @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        String accessModifier = mockField.getAccessModifier();
+        text.append("\n")
+                .append(INDENT).append("@").append(imports.shorten(annotation)).append("\n")
+                .append(INDENT).append(accessModifier).append(accessModifier.isEmpty() ? "" : " ")
+                .append(imports.shorten(mockField.getType())).append(" ").append(mockField.getName()).append(";\n");
+    }
+
+    private void renderMethod(@NotNull TestClassModel model, @NotNull MethodTest methodTest, boolean callSetUp,
+                              @NotNull ImportCollector imports, @NotNull StringBuilder text) {
+        text.append("\n");
+        String testAnnotation = getTestAnnotationFqnString(model.getTestLibrary());
+        if (!testAnnotation.isEmpty()) {
+            text.append(INDENT).append("@").append(imports.shorten(testAnnotation)).append("\n");
+        }
+        text.append(INDENT).append("public void ").append(methodTest.getTestMethodName()).append("() {\n");
+        if (callSetUp) {
+            text.append(INDENT).append(INDENT).append(SET_UP_CALL).append("\n");
+        }
+
+        if (!methodTest.getGivenStatements().isEmpty()) {
+            text.append(INDENT).append(INDENT).append(GIVEN_COMMENT).append("\n");
+            methodTest.getGivenStatements()
+                    .forEach(givenStatement -> text.append(INDENT).append(INDENT).append(imports.shorten(givenStatement, methodTest.getClassNames())).append("\n"));
+            text.append("\n");
+        }
+
+        text.append(INDENT).append(INDENT).append("//  when\n")
+                .append(INDENT).append(INDENT).append(model.getInjectTarget().getName()).append(".").append(methodTest.getMethodName())
+                .append("(").append(imports.shorten(String.join(", ", methodTest.getArguments()), methodTest.getClassNames())).append(");\n")
+                .append(INDENT).append("}\n");
+    }
+
+    @NotNull
+    private String getTestAnnotationFqnString(@NotNull TestLibraryAvailable testLibrary) {
+        String fqnString = "";
+
+        switch (testLibrary) {
+            case JUNIT_JUPITER:
+                fqnString = "org.junit.jupiter.api.Test";
+                break;
+            case JUNIT_4:
+                fqnString = "org.junit.Test";
+                break;
+            case TESTNG:
+                fqnString = "org.testng.annotations.Test";
+                break;
+        }
+        return fqnString;
+    }
+}
@@ -0,0 +1,140 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ModuleRootModificationUtil;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.IncorrectOperationException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.model.java.JavaModuleSourceRootTypes;
+import org.jetbrains.jps.model.java.JavaSourceRootType;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the test source root of the modules and the package directories below them,
+ * so generating tests for many classes walks each directory chain only once.
+ * Not thread safe, it is meant to be used inside write actions.
+ */
+class TestDirectories {
+
+    /**
+     * The path of the JMH source root below the content root, as the JMH Gradle plugin lays it out.
+     */
+    static final String JMH_SOURCE_ROOT = "src/jmh/java";
+
+    private final boolean benchmarks;
+    private final Map<Module, PsiDirectory> testRoots = new HashMap<>();
+    private final Map<Module, Map<String, PsiDirectory>> packageDirectories = new HashMap<>();
+
+    TestDirectories() {
+        this(false);
+    }
+
+    private TestDirectories(boolean benchmarks) {
+        this.benchmarks = benchmarks;
+    }
+
+    /**
+     * Directories below the JMH source root of the modules, which is created as a test source root if it is missing.
+     */
+    @NotNull
+    static TestDirectories forBenchmarks() {
+        return new TestDirectories(true);
+    }
+
+    @NotNull
+    PsiDirectory getOrCreate(@NotNull Module module, @NotNull String packageName) {
+        Map<String, PsiDirectory> directories = packageDirectories.computeIfAbsent(module, m -> new HashMap<>());
+        PsiDirectory directory = directories.get(packageName);
+        if (directory != null && directory.isValid()) {
+            return directory;
+        }
+
+        if (packageName.isEmpty()) {
+            directory = getTestSourceRoot(module);
+        } else {
+            int lastDot = packageName.lastIndexOf('.');
+            PsiDirectory parent = lastDot < 0 ? getTestSourceRoot(module) : getOrCreate(module, packageName.substring(0, lastDot));
+            String subdirectoryName = packageName.substring(lastDot + 1);
+            PsiDirectory subdirectory = parent.findSubdirectory(subdirectoryName);
+            directory = subdirectory == null ? parent.createSubdirectory(subdirectoryName) : subdirectory;
+        }
+        directories.put(packageName, directory);
+        return directory;
+    }
+
+    @NotNull
+    private PsiDirectory getTestSourceRoot(@NotNull Module module) {
+        PsiDirectory testRoot = testRoots.get(module);
+        if (testRoot != null && testRoot.isValid()) {
+            return testRoot;
+        }
+
+        VirtualFile sourceRoot;
+        if (benchmarks) {
+            sourceRoot = findJmhSourceRoot(module);
+            if (sourceRoot == null) {
+                sourceRoot = createJmhSourceRoot(module);
+            }
+        } else {
+            List<VirtualFile> testSourceRoots = ModuleRootManager.getInstance(module).getSourceRoots(JavaModuleSourceRootTypes.TESTS);
+            if (testSourceRoots.isEmpty()) {
+                throw new IncorrectOperationException("Test source folder doesn't exist. It should.\n");
+            }
+            sourceRoot = testSourceRoots.get(0);
+        }
+
+        testRoot = PsiManager.getInstance(module.getProject()).findDirectory(sourceRoot);
+        if (testRoot == null) {
+            throw new IncorrectOperationException("Test source folder '" + sourceRoot.getPath() + "' is not a directory.\n");
+        }
+        testRoots.put(module, testRoot);
+        return testRoot;
+    }
+
+    @Nullable
+    private static VirtualFile findJmhSourceRoot(@NotNull Module module) {
+        for (VirtualFile sourceRoot : ModuleRootManager.getInstance(module).getSourceRoots(true)) {
+            VirtualFile parent = sourceRoot.getParent();
+            if ("jmh".equals(sourceRoot.getName()) || parent != null && "jmh".equals(parent.getName()) && "java".equals(sourceRoot.getName())) {
+                return sourceRoot;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    private static VirtualFile createJmhSourceRoot(@NotNull Module module) {
+        VirtualFile[] contentRoots = ModuleRootManager.getInstance(module).getContentRoots();
+        if (contentRoots.length == 0) {
+            throw new IncorrectOperationException("Module " + module.getName() + " has no content root for the JMH sources.\n");
+        }
+
+        VirtualFile sourceRoot;
+        try {
+            sourceRoot = VfsUtil.createDirectoryIfMissing(contentRoots[0], JMH_SOURCE_ROOT);
+        } catch (IOException e) {
+            throw new IncorrectOperationException("JMH source folder can't be created: " + e.getMessage(), (Throwable) e);
+        }
+        ModuleRootModificationUtil.updateModel(module, model -> {
+            for (ContentEntry contentEntry : model.getContentEntries()) {
+                VirtualFile contentRoot = contentEntry.getFile();
+                if (contentRoot != null && VfsUtilCore.isAncestor(contentRoot, sourceRoot, false)) {
+                    contentEntry.addSourceFolder(sourceRoot, JavaSourceRootType.TEST_SOURCE);
+                    return;
+                }
+            }
+        });
+        return sourceRoot;
+    }
+}
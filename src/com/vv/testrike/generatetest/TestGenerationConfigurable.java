@@ -0,0 +1,74 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.ui.ListCellRendererWrapper;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+
+public class TestGenerationConfigurable implements Configurable {
+
+    private final Project project;
+    private JSpinner helperDepth;
+    private ComboBox<TestRunnerMode> runnerMode;
+
+    public TestGenerationConfigurable(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @Nls
+    @Override
+    public String getDisplayName() {
+        return "Testrike";
+    }
+
+    @Nullable
+    @Override
+    public JComponent createComponent() {
+        helperDepth = new JSpinner(new SpinnerNumberModel(0, 0, 10, 1));
+        runnerMode = new ComboBox<>(new TestRunnerMode[]{TestRunnerMode.MOCKITO_EXTENSION, TestRunnerMode.SPRING_EXTENSION});
+        runnerMode.setRenderer(new ListCellRendererWrapper<TestRunnerMode>() {
+            @Override
+            public void customize(JList list, TestRunnerMode value, int index, boolean selected, boolean hasFocus) {
+                setText(value == TestRunnerMode.SPRING_EXTENSION ? "Spring test context" : "Mockito extension, or constructor when injected only by it");
+            }
+        });
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent(new JBLabel("Helper method depth followed for stubs:"), helperDepth)
+                .addLabeledComponent(new JBLabel("Mocks of new test classes created by:"), runnerMode)
+                .addComponentFillVertically(new JPanel(), 0)
+                .getPanel();
+    }
+
+    @Override
+    public boolean isModified() {
+        TestGenerationSettings settings = TestGenerationSettings.getInstance(project);
+        return (Integer) helperDepth.getValue() != settings.helperDepth || runnerMode.getSelectedItem() != settings.runnerMode;
+    }
+
+    @Override
+    public void apply() {
+        TestGenerationSettings settings = TestGenerationSettings.getInstance(project);
+        settings.helperDepth = (Integer) helperDepth.getValue();
+        settings.runnerMode = (TestRunnerMode) runnerMode.getSelectedItem();
+    }
+
+    @Override
+    public void reset() {
+        TestGenerationSettings settings = TestGenerationSettings.getInstance(project);
+        helperDepth.setValue(settings.helperDepth);
+        runnerMode.setSelectedItem(settings.runnerMode);
+    }
+
+    @Override
+    public void disposeUIResources() {
+        helperDepth = null;
+        runnerMode = null;
+    }
+}
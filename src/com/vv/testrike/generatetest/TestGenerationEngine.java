@@ -0,0 +1,287 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.util.IncorrectOperationException;
+import com.vv.testrike.statistics.GenerationRun;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Generates test classes in two phases: the production classes are analysed concurrently on the shared
+ * worker pool, then the resulting models are applied in one write command action. The engine keeps no
+ * state between the calls, so any number of generations of the project may use it at the same time.
+ */
+public class TestGenerationEngine {
+
+    private final Project project;
+    private final TestClassGenerator generator;
+    private final GeneratedTestValidator validator;
+
+    public TestGenerationEngine(@NotNull Project project) {
+        this.project = project;
+        this.generator = new TestClassGenerator(project);
+        this.validator = new GeneratedTestValidator(project);
+    }
+
+    public static TestGenerationEngine getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, TestGenerationEngine.class);
+    }
+
+    /**
+     * An analyzer configured by the settings of the project, to be passed to every {@link #analyze} call of one generation run.
+     */
+    @NotNull
+    TestClassAnalyzer createAnalyzer() {
+        TestGenerationSettings settings = TestGenerationSettings.getInstance(project);
+        return new TestClassAnalyzer(settings.helperDepth, settings.runnerMode);
+    }
+
+    /**
+     * Analyses the classes concurrently, each in a read action which is cancelled by any write action
+     * and restarted after it. The text of a new test class is rendered and checked by the {@link GeneratedTestValidator}
+     * in the same read action, and so are the members added to an existing test class. During indexing the classes are analysed for skeletons, see
+     * {@link TestClassAnalyzer#analyzeSkeleton}, which are not checked. Must not be called inside a read action.
+     *
+     * @param analyzer the analyzer of the generation run
+     * @param run counts the analysed classes and their methods, stubs, resolved references, new value types and repairs
+     * @return the models in the order of the classes, without the classes which no longer exist
+     */
+    @NotNull
+    List<TestClassModel> analyze(@NotNull List<SmartPsiElementPointer<PsiClass>> classes, @NotNull TestClassAnalyzer analyzer,
+                                 @NotNull ProgressIndicator indicator, @NotNull GenerationRun run) {
+        return analyze(classes, analyzer, indicator, run, (psiClass, testLibrary) -> {
+            if (!DumbService.isDumb(project)) {
+                try {
+                    return analyzeWithIndexes(psiClass, testLibrary, analyzer, run);
+                } catch (IndexNotReadyException e) {
+                    // the indexing started during the analysis
+                }
+            }
+            return analyzer.analyzeSkeleton(psiClass, testLibrary);
+        });
+    }
+
+    /**
+     * Analyses the classes like {@link #analyze}, but never for skeletons, to generate the tests of the classes
+     * deferred during indexing. Needs the indexes.
+     */
+    @NotNull
+    List<TestClassModel> analyzeDeferred(@NotNull List<SmartPsiElementPointer<PsiClass>> classes, @NotNull TestClassAnalyzer analyzer,
+                                         @NotNull ProgressIndicator indicator, @NotNull GenerationRun run) {
+        return analyze(classes, analyzer, indicator, run, (psiClass, testLibrary) -> analyzeWithIndexes(psiClass, testLibrary, analyzer, run));
+    }
+
+    @NotNull
+    private TestClassModel analyzeWithIndexes(@NotNull PsiClass psiClass, @NotNull TestLibraryAvailable testLibrary,
+                                              @NotNull TestClassAnalyzer analyzer, @NotNull GenerationRun run) {
+        TestClassModel model = analyzer.analyze(psiClass, testLibrary);
+        if (model.isUpToDate()) {
+            return model;
+        }
+        PsiClass existingTestClass = model.getExistingTestClass() == null ? null : model.getExistingTestClass().getElement();
+        TestValidation validation = run.time("validate", () -> existingTestClass == null
+                ? validator.validate(model) : validator.validateMembers(model, existingTestClass));
+        run.count(GenerationRun.REPAIRS, validation.getRepairs().size());
+        return model.withValidation(validation);
+    }
+
+    /**
+     * Analyses the classes like {@link #analyze} for new test classes, whether their test classes exist or not,
+     * to complete the test classes generated from skeletons. The stubs are checked in the context of the test class
+     * generated from the skeleton. Needs the indexes.
+     *
+     * @param testClasses finds the test class generated from the skeleton of a production class, inside the read action
+     */
+    @NotNull
+    List<TestClassModel> analyzeAsNew(@NotNull List<SmartPsiElementPointer<PsiClass>> classes, @NotNull Function<PsiClass, PsiClass> testClasses,
+                                      @NotNull TestClassAnalyzer analyzer, @NotNull ProgressIndicator indicator, @NotNull GenerationRun run) {
+        return analyze(classes, analyzer, indicator, run, (psiClass, testLibrary) -> {
+            TestClassModel model = analyzer.analyze(psiClass, testLibrary, psiClass.getName() + "Test");
+            PsiClass testClass = testClasses.apply(psiClass);
+            if (testClass == null) {
+                return model;
+            }
+            TestValidation validation = run.time("validate", () -> validator.validateGivenStatements(model, testClass));
+            run.count(GenerationRun.REPAIRS, validation.getRepairs().size());
+            return model.withValidation(validation);
+        });
+    }
+
+    /**
+     * Analyses the classes like {@link #analyze} for new benchmark classes named after them, which have no stubs
+     * to check. Needs the indexes.
+     */
+    @NotNull
+    List<TestClassModel> analyzeForBenchmarks(@NotNull List<SmartPsiElementPointer<PsiClass>> classes, @NotNull TestClassAnalyzer analyzer,
+                                              @NotNull ProgressIndicator indicator, @NotNull GenerationRun run) {
+        return analyze(classes, analyzer, indicator, run,
+                (psiClass, testLibrary) -> analyzer.analyze(psiClass, TestLibraryAvailable.NON, psiClass.getName() + "Benchmark"));
+    }
+
+    @NotNull
+    private List<TestClassModel> analyze(@NotNull List<SmartPsiElementPointer<PsiClass>> classes, @NotNull TestClassAnalyzer analyzer,
+                                         @NotNull ProgressIndicator indicator, @NotNull GenerationRun run,
+                                         @NotNull BiFunction<PsiClass, TestLibraryAvailable, TestClassModel> analysis) {
+        long resolveCount = analyzer.getResolveCount();
+        int valueTypeCount = analyzer.getValueTypeCount();
+        TestLibraryDetector testLibraryDetector = TestLibraryDetector.getInstance(project);
+        AtomicReferenceArray<TestClassModel> models = new AtomicReferenceArray<>(classes.size());
+
+        List<Integer> indices = new ArrayList<>(classes.size());
+        for (int i = 0; i < classes.size(); i++) {
+            indices.add(i);
+        }
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(indices, indicator, false, index -> {
+            models.set(index, run.time("analyze", () -> analyze(classes.get(index), analysis, testLibraryDetector, indicator)));
+            return true;
+        });
+
+        run.count(GenerationRun.RESOLVES, analyzer.getResolveCount() - resolveCount);
+        run.count(GenerationRun.VALUE_TYPES, analyzer.getValueTypeCount() - valueTypeCount);
+
+        List<TestClassModel> result = new ArrayList<>(classes.size());
+        for (int i = 0; i < models.length(); i++) {
+            TestClassModel model = models.get(i);
+            if (model != null) {
+                result.add(model);
+                run.count(GenerationRun.CLASSES, 1);
+                run.count(GenerationRun.METHODS, model.getMethodTests().size());
+                run.count(GenerationRun.STUBS, model.getMethodTests().stream().mapToInt(methodTest -> methodTest.getGivenStatements().size()).sum());
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private static TestClassModel analyze(@NotNull SmartPsiElementPointer<PsiClass> pointer,
+                                          @NotNull BiFunction<PsiClass, TestLibraryAvailable, TestClassModel> analysis,
+                                          @NotNull TestLibraryDetector testLibraryDetector, @NotNull ProgressIndicator indicator) {
+        TestClassModel[] model = new TestClassModel[1];
+        while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(() -> {
+            PsiClass psiClass = pointer.getElement();
+            if (psiClass != null) {
+                Module module = ModuleUtilCore.findModuleForPsiElement(psiClass);
+                model[0] = analysis.apply(psiClass, testLibraryDetector.getTestLibrary(module));
+            }
+        }, indicator)) {
+            indicator.checkCanceled();
+            ProgressIndicatorUtils.yieldToPendingWriteActions();
+        }
+        return model[0];
+    }
+
+    /**
+     * Whether the production file or the existing test file changed since the model was analysed,
+     * so the class has to be analysed again. Must be called inside a read action.
+     */
+    boolean isOutdated(@NotNull TestClassModel model) {
+        PsiFile productionFile = model.getProductionClass().getContainingFile();
+        if (productionFile == null || productionFile.getModificationStamp() != model.getProductionFileStamp()) {
+            return true;
+        }
+        if (model.getExistingTestClass() == null) {
+            return false;
+        }
+        PsiFile testFile = model.getExistingTestClass().getContainingFile();
+        return testFile == null || testFile.getModificationStamp() != model.getExistingTestFileStamp();
+    }
+
+    /**
+     * Whether the test class of a skeleton already has a file in the package directory below a source root of the
+     * production module. The file is looked up without the indexes; its members can only be added after the indexing.
+     * Must be called inside a read action.
+     */
+    boolean hasTestFile(@NotNull TestClassModel model) {
+        PsiClass psiClass = model.getProductionClass().getElement();
+        Module module = psiClass == null ? null : ModuleUtilCore.findModuleForPsiElement(psiClass);
+        if (module == null) {
+            return false;
+        }
+        String fileName = model.getTestClassName() + "." + StdFileTypes.JAVA.getDefaultExtension();
+        String path = model.getPackageName().isEmpty() ? fileName : model.getPackageName().replace('.', '/') + "/" + fileName;
+        return Stream.of(ModuleRootManager.getInstance(module).getSourceRoots(true))
+                .anyMatch(sourceRoot -> sourceRoot.findFileByRelativePath(path) != null);
+    }
+
+    /**
+     * Creates the test class of the model, or adds the missing members to the existing one. When its tests
+     * may run concurrently, the parallel execution is enabled in the JUnit Platform properties of the test module,
+     * or the concurrent marker added to the class is removed if the module has no place for the properties.
+     * Must be called inside a write command action.
+     *
+     * @param testDirectories the test directories of the write phase, shared by its models
+     */
+    @NotNull
+    PsiClass apply(@NotNull TestClassModel model, @NotNull TestDirectories testDirectories, @NotNull GenerationRun run) {
+        PsiClass existingTestClass = model.getExistingTestClass();
+        boolean marked = existingTestClass != null && existingTestClass.getModifierList() != null
+                && existingTestClass.getModifierList().findAnnotation(TestClassRenderer.EXECUTION) != null;
+        PsiClass testClass = existingTestClass != null
+                ? generator.addMembers(model, run)
+                : generator.generate(model, getDirectory(model, testDirectories), run);
+
+        Module testModule = TestClassRenderer.isConcurrent(model) ? ModuleUtilCore.findModuleForPsiElement(testClass) : null;
+        if (testModule != null && !run.time("properties", () -> JUnitPlatformProperties.enableParallelExecution(testModule)) && !marked) {
+            // without the properties the marker would not make the class run concurrently
+            PsiAnnotation execution = testClass.getModifierList() == null ? null
+                    : testClass.getModifierList().findAnnotation(TestClassRenderer.EXECUTION);
+            if (execution != null) {
+                execution.delete();
+            }
+        }
+        return testClass;
+    }
+
+    /**
+     * Adds the stubs of the model to the test class generated from its skeleton, see {@link TestClassGenerator#addGivenStatements}.
+     * Must be called inside a write command action.
+     *
+     * @return the number of completed test methods
+     */
+    int completeSkeleton(@NotNull PsiClass testClass, @NotNull TestClassModel model, @NotNull GenerationRun run) {
+        return generator.addGivenStatements(testClass, model, run);
+    }
+
+    /**
+     * Creates the JMH benchmark class of the model in the JMH source root of the production module.
+     * Must be called inside a write command action.
+     *
+     * @param benchmarkDirectories directories of {@link TestDirectories#forBenchmarks()}
+     */
+    @NotNull
+    PsiClass applyBenchmark(@NotNull TestClassModel model, @NotNull TestDirectories benchmarkDirectories, @NotNull GenerationRun run) {
+        return generator.generateBenchmark(model, getDirectory(model, benchmarkDirectories), run);
+    }
+
+    @NotNull
+    private static PsiDirectory getDirectory(@NotNull TestClassModel model, @NotNull TestDirectories directories) {
+        PsiClass psiClass = model.getProductionClass().getElement();
+        Module module = psiClass == null ? null : ModuleUtilCore.findModuleForPsiElement(psiClass);
+        if (module == null) {
+            throw new IncorrectOperationException("Class " + model.getTestClassName() + " is not in a module");
+        }
+        return directories.getOrCreate(module, model.getPackageName());
+    }
+}
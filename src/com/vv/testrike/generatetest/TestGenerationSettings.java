@@ -0,0 +1,41 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The project level options of test generation.
+ */
+@State(name = "TestrikeTestGeneration", storages = @Storage("testrike.xml"))
+public class TestGenerationSettings implements PersistentStateComponent<TestGenerationSettings> {
+
+    /**
+     * How deep the private and same-class helper methods of a tested method are followed when looking for calls to stub.
+     */
+    public int helperDepth = StubDiscovery.DEFAULT_HELPER_DEPTH;
+
+    /**
+     * How the new test classes create their subject and mocks, either through Spring or through Mockito alone.
+     */
+    public TestRunnerMode runnerMode = TestRunnerMode.MOCKITO_EXTENSION;
+
+    public static TestGenerationSettings getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, TestGenerationSettings.class);
+    }
+
+    @NotNull
+    @Override
+    public TestGenerationSettings getState() {
+        return this;
+    }
+
+    @Override
+    public void loadState(@NotNull TestGenerationSettings state) {
+        XmlSerializerUtil.copyBean(state, this);
+    }
+}
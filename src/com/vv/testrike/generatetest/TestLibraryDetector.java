@@ -0,0 +1,94 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.roots.OrderRootType;
+import com.intellij.openapi.roots.libraries.Library;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells which test library the modules of a project use. The libraries of a module, both its own
+ * and the project level ones it depends on, are scanned once; the result is kept until the roots
+ * of the project change.
+ */
+public class TestLibraryDetector {
+
+    /**
+     * Library coordinates in the order of preference when a module depends on more than one test library.
+     */
+    private static final String[] LIBRARY_IDS = {
+            "org.junit.jupiter:junit-jupiter-api:", "junit:junit:4", "org.testng:testng:", "junit:junit:3"};
+    private static final String[] LIBRARY_JAR_PREFIXES = {"junit-jupiter-api-", "junit-4", "testng-", "junit-3"};
+    private static final TestLibraryAvailable[] LIBRARIES = {
+            TestLibraryAvailable.JUNIT_JUPITER, TestLibraryAvailable.JUNIT_4, TestLibraryAvailable.TESTNG, TestLibraryAvailable.JUNIT_3};
+
+    private final Map<Module, TestLibraryAvailable> testLibraries = new ConcurrentHashMap<>();
+
+    public TestLibraryDetector(@NotNull Project project) {
+        project.getMessageBus().connect(project).subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(ModuleRootEvent event) {
+                testLibraries.clear();
+            }
+        });
+    }
+
+    public static TestLibraryDetector getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, TestLibraryDetector.class);
+    }
+
+    /**
+     * Must be called inside a read action when the result of the module is not cached yet.
+     */
+    @NotNull
+    public TestLibraryAvailable getTestLibrary(@Nullable Module module) {
+        if (module == null) {
+            return TestLibraryAvailable.NON;
+        }
+        return testLibraries.computeIfAbsent(module, TestLibraryDetector::detect);
+    }
+
+    @NotNull
+    private static TestLibraryAvailable detect(@NotNull Module module) {
+        int[] best = {LIBRARIES.length};
+        OrderEnumerator.orderEntries(module).librariesOnly().forEachLibrary(library -> {
+            best[0] = Math.min(best[0], getPreference(library));
+            return best[0] > 0;
+        });
+        return best[0] < LIBRARIES.length ? LIBRARIES[best[0]] : TestLibraryAvailable.NON;
+    }
+
+    /**
+     * @return the index of the library in {@link #LIBRARIES}, or the length of it when it is not a test library
+     */
+    private static int getPreference(@NotNull Library library) {
+        String name = library.getName();
+        if (name != null) {
+            for (int i = 0; i < LIBRARY_IDS.length; i++) {
+                if (name.contains(LIBRARY_IDS[i])) {
+                    return i;
+                }
+            }
+            return LIBRARIES.length;
+        }
+
+        for (VirtualFile root : library.getFiles(OrderRootType.CLASSES)) {
+            for (int i = 0; i < LIBRARY_JAR_PREFIXES.length; i++) {
+                if (root.getName().startsWith(LIBRARY_JAR_PREFIXES[i])) {
+                    return i;
+                }
+            }
+        }
+        return LIBRARIES.length;
+    }
+}
@@ -0,0 +1,20 @@
+package com.vv.testrike.generatetest;
+
+/**
+ * How a generated test class creates its subject and mocks.
+ */
+public enum TestRunnerMode {
+    /**
+     * The mocks are injected by a Spring test context, which the test starts.
+     */
+    SPRING_EXTENSION,
+    /**
+     * The mocks are injected by the Mockito extension, runner or listener of the test library.
+     */
+    MOCKITO_EXTENSION,
+    /**
+     * The test creates the mocks and passes them to the constructor of the subject itself. It is chosen by the
+     * analysis instead of {@link #MOCKITO_EXTENSION} for a subject injected only through its constructor.
+     */
+    DIRECT_CONSTRUCTION
+}
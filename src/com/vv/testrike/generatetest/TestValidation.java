@@ -0,0 +1,66 @@
+package com.vv.testrike.generatetest;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of checking a rendered test file or the rendered members of an existing test class with
+ * {@link GeneratedTestValidator}: the texts after the repairs, what was repaired and what is still wrong.
+ * Like the model, it holds no PSI.
+ */
+final class TestValidation {
+
+    private final String text;
+    private final List<String> members;
+    private final List<String> repairs;
+    private final List<String> problems;
+
+    TestValidation(@NotNull String text, @NotNull List<String> repairs, @NotNull List<String> problems) {
+        this(text, Collections.emptyList(), repairs, problems);
+    }
+
+    TestValidation(@NotNull List<String> members, @NotNull List<String> repairs, @NotNull List<String> problems) {
+        this("", members, repairs, problems);
+    }
+
+    private TestValidation(@NotNull String text, @NotNull List<String> members, @NotNull List<String> repairs,
+                           @NotNull List<String> problems) {
+        this.text = text;
+        this.members = Collections.unmodifiableList(members);
+        this.repairs = Collections.unmodifiableList(repairs);
+        this.problems = Collections.unmodifiableList(problems);
+    }
+
+    /**
+     * The text of the new test file, empty for the members of an existing test class. Its repaired parts have
+     * qualified class references.
+     */
+    @NotNull
+    String getText() {
+        return text;
+    }
+
+    /**
+     * The members checked in the context of an existing test class, in the order they were rendered, with qualified
+     * class references; empty for a new test file.
+     */
+    @NotNull
+    List<String> getMembers() {
+        return members;
+    }
+
+    @NotNull
+    List<String> getRepairs() {
+        return repairs;
+    }
+
+    /**
+     * The problems which could not be repaired, each prefixed with the member it is in.
+     */
+    @NotNull
+    List<String> getProblems() {
+        return problems;
+    }
+}
@@ -0,0 +1,264 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.psi.*;
+import com.intellij.psi.util.InheritanceUtil;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.psi.util.TypeConversionUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Decides how a generated test builds a value of a type, and remembers the decision of every erased type
+ * for the rest of the generation run, so analysing many methods resolves each type once. A decision to call
+ * a constructor depends on how deep the value is nested, so it is remembered per depth. The values are
+ * texts with fully qualified class references. It may be used by concurrent analyses.
+ * <p>
+ * A class type gets, in this order of preference: an empty immutable collection or a constant of the JDK,
+ * the first enum constant, the no-arg constructor, a parameterless static factory returning the class,
+ * {@code builder().build()}, the only public constructor with values of its parameters, or a mock.
+ */
+class ValueRegistry {
+
+    /**
+     * How deep the parameters of constructors are filled with values of their own constructors.
+     */
+    private static final int MAX_CONSTRUCTOR_DEPTH = 2;
+
+    private static final Map<String, String> KNOWN_VALUES = new HashMap<>();
+
+    static {
+        KNOWN_VALUES.put(CommonClassNames.JAVA_LANG_STRING, "\"\"");
+        KNOWN_VALUES.put(CommonClassNames.JAVA_LANG_OBJECT, "new java.lang.Object()");
+        KNOWN_VALUES.put(CommonClassNames.JAVA_LANG_ITERABLE, "java.util.Collections.emptyList()");
+        KNOWN_VALUES.put(CommonClassNames.JAVA_UTIL_COLLECTION, "java.util.Collections.emptyList()");
+        KNOWN_VALUES.put(CommonClassNames.JAVA_UTIL_LIST, "java.util.Collections.emptyList()");
+        KNOWN_VALUES.put(CommonClassNames.JAVA_UTIL_SET, "java.util.Collections.emptySet()");
+        KNOWN_VALUES.put("java.util.SortedSet", "java.util.Collections.emptySortedSet()");
+        KNOWN_VALUES.put("java.util.NavigableSet", "java.util.Collections.emptyNavigableSet()");
+        KNOWN_VALUES.put(CommonClassNames.JAVA_UTIL_MAP, "java.util.Collections.emptyMap()");
+        KNOWN_VALUES.put(CommonClassNames.JAVA_UTIL_SORTED_MAP, "java.util.Collections.emptySortedMap()");
+        KNOWN_VALUES.put("java.util.NavigableMap", "java.util.Collections.emptyNavigableMap()");
+        KNOWN_VALUES.put("java.util.Iterator", "java.util.Collections.emptyIterator()");
+        KNOWN_VALUES.put("java.util.Optional", "java.util.Optional.empty()");
+        KNOWN_VALUES.put("java.util.OptionalInt", "java.util.OptionalInt.empty()");
+        KNOWN_VALUES.put("java.util.OptionalLong", "java.util.OptionalLong.empty()");
+        KNOWN_VALUES.put("java.util.OptionalDouble", "java.util.OptionalDouble.empty()");
+        KNOWN_VALUES.put("java.util.stream.Stream", "java.util.stream.Stream.empty()");
+        KNOWN_VALUES.put("java.math.BigDecimal", "java.math.BigDecimal.ZERO");
+        KNOWN_VALUES.put("java.math.BigInteger", "java.math.BigInteger.ZERO");
+        KNOWN_VALUES.put("java.time.Duration", "java.time.Duration.ZERO");
+        KNOWN_VALUES.put("java.time.Instant", "java.time.Instant.EPOCH");
+        KNOWN_VALUES.put("java.util.UUID", "new java.util.UUID(0L, 0L)");
+        KNOWN_VALUES.put(CommonClassNames.JAVA_LANG_CLASS, "java.lang.Object.class");
+    }
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    /**
+     * @return the text of an expression of the type, the {@code null} literal for the types no value can be built of
+     */
+    @NotNull
+    String getValue(@NotNull PsiType type) {
+        return getValue(type, 0);
+    }
+
+    /**
+     * A value which needs no resolution, for a skeleton analysed during indexing: the default of a primitive,
+     * or null cast to the type as it is written so an overloaded method is still chosen.
+     *
+     * @param typeText the text the type is written with in the source
+     */
+    @NotNull
+    static String getUnresolvedValue(@NotNull PsiType type, @NotNull String typeText) {
+        if (type instanceof PsiPrimitiveType) {
+            return getPrimitiveValue((PsiPrimitiveType) type);
+        }
+        return "(" + typeText.replace("...", "[]") + ") null";
+    }
+
+    /**
+     * The number of decisions remembered so far.
+     */
+    int getTypeCount() {
+        return values.size();
+    }
+
+    @NotNull
+    private String getValue(@NotNull PsiType type, int depth) {
+        if (type instanceof PsiPrimitiveType) {
+            return getPrimitiveValue((PsiPrimitiveType) type);
+        }
+        PsiType erasure = TypeConversionUtil.erasure(type);
+        String key = erasure.getCanonicalText();
+        String value = values.get(key);
+        if (value != null) {
+            return value;
+        }
+        String depthKey = key + "#" + depth;
+        value = values.get(depthKey);
+        if (value != null) {
+            return value;
+        }
+        // not computeIfAbsent: deciding a constructor may decide the types of its parameters recursively
+        value = decide(erasure);
+        if (value == null) {
+            value = construct(erasure, depth);
+            key = depthKey;
+        }
+        String decided = values.putIfAbsent(key, value);
+        return decided != null ? decided : value;
+    }
+
+    @NotNull
+    private static String getPrimitiveValue(@NotNull PsiPrimitiveType type) {
+        if (PsiType.BOOLEAN.equals(type)) {
+            return "false";
+        } else if (PsiType.BYTE.equals(type)) {
+            return "(byte) 0";
+        } else if (PsiType.SHORT.equals(type)) {
+            return "(short) 0";
+        } else if (PsiType.INT.equals(type)) {
+            return "0";
+        } else if (PsiType.LONG.equals(type)) {
+            return "0L";
+        } else if (PsiType.FLOAT.equals(type)) {
+            return "0.0f";
+        } else if (PsiType.DOUBLE.equals(type)) {
+            return "0.0d";
+        } else if (PsiType.CHAR.equals(type)) {
+            return "'\\0'";
+        } else {
+            return "null";
+        }
+    }
+
+    /**
+     * The value of the type which does not depend on the depth, or null if it is left to {@link #construct}.
+     */
+    @Nullable
+    private static String decide(@NotNull PsiType type) {
+        if (type instanceof PsiArrayType) {
+            PsiType componentType = ((PsiArrayType) type).getComponentType();
+            return "new " + componentType.getCanonicalText() + "[0]";
+        }
+        PsiPrimitiveType unboxed = PsiPrimitiveType.getUnboxedType(type);
+        if (unboxed != null) {
+            return getPrimitiveValue(unboxed);
+        }
+
+        PsiClass psiClass = PsiUtil.resolveClassInClassTypeOnly(type);
+        if (psiClass == null || psiClass instanceof PsiTypeParameter || psiClass.getQualifiedName() == null) {
+            return "null";
+        }
+        String qualifiedName = psiClass.getQualifiedName();
+        String known = KNOWN_VALUES.get(qualifiedName);
+        if (known != null) {
+            return known;
+        }
+        if (psiClass.isEnum()) {
+            return Stream.of(psiClass.getFields())
+                    .filter(field -> field instanceof PsiEnumConstant)
+                    .findFirst()
+                    .map(constant -> qualifiedName + "." + constant.getName())
+                    .orElse("null");
+        }
+
+        if (isInstantiable(psiClass) && hasPublicNoArgConstructor(psiClass)) {
+            return "new " + qualifiedName + (psiClass.hasTypeParameters() ? "<>()" : "()");
+        }
+        String factory = findStaticFactory(psiClass);
+        if (factory != null) {
+            return qualifiedName + "." + factory + "()";
+        }
+        if (hasBuilder(psiClass)) {
+            return qualifiedName + ".builder().build()";
+        }
+        return null;
+    }
+
+    /**
+     * The only public constructor with values of its parameters while the depth allows it, otherwise a mock.
+     */
+    @NotNull
+    private String construct(@NotNull PsiType type, int depth) {
+        PsiClass psiClass = PsiUtil.resolveClassInClassTypeOnly(type);
+        String qualifiedName = psiClass == null ? null : psiClass.getQualifiedName();
+        if (qualifiedName == null) {
+            return "null";
+        }
+        PsiMethod constructor = isInstantiable(psiClass) && depth < MAX_CONSTRUCTOR_DEPTH ? findOnlyPublicConstructor(psiClass) : null;
+        if (constructor != null) {
+            return "new " + qualifiedName + (psiClass.hasTypeParameters() ? "<>(" : "(")
+                    + Stream.of(constructor.getParameterList().getParameters())
+                    .map(parameter -> getValue(parameter.getType(), depth + 1))
+                    .collect(Collectors.joining(", "))
+                    + ")";
+        }
+        return "org.mockito.Mockito.mock(" + qualifiedName + ".class)";
+    }
+
+    private static boolean isInstantiable(@NotNull PsiClass psiClass) {
+        return !psiClass.isInterface() && !psiClass.isAnnotationType() && !psiClass.hasModifierProperty(PsiModifier.ABSTRACT);
+    }
+
+    private static boolean hasPublicNoArgConstructor(@NotNull PsiClass psiClass) {
+        PsiMethod[] constructors = psiClass.getConstructors();
+        if (constructors.length == 0) {
+            return true;
+        }
+        return Stream.of(constructors)
+                .anyMatch(constructor -> constructor.hasModifierProperty(PsiModifier.PUBLIC) && constructor.getParameterList().getParametersCount() == 0);
+    }
+
+    @Nullable
+    private static PsiMethod findOnlyPublicConstructor(@NotNull PsiClass psiClass) {
+        PsiMethod[] constructors = Stream.of(psiClass.getConstructors())
+                .filter(constructor -> constructor.hasModifierProperty(PsiModifier.PUBLIC))
+                .toArray(PsiMethod[]::new);
+        return constructors.length == 1 ? constructors[0] : null;
+    }
+
+    /**
+     * The name of a public static method without parameters which returns the class, such as {@code of()} or {@code getInstance()}.
+     */
+    @Nullable
+    private static String findStaticFactory(@NotNull PsiClass psiClass) {
+        for (PsiMethod method : psiClass.getMethods()) {
+            if (method.hasModifierProperty(PsiModifier.STATIC) && method.hasModifierProperty(PsiModifier.PUBLIC)
+                    && method.getParameterList().getParametersCount() == 0 && !method.isConstructor()
+                    && psiClass.equals(PsiUtil.resolveClassInClassTypeOnly(method.getReturnType()))) {
+                return method.getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a public static {@code builder()} returns a class whose {@code build()} returns the class.
+     */
+    private static boolean hasBuilder(@NotNull PsiClass psiClass) {
+        for (PsiMethod builderMethod : psiClass.findMethodsByName("builder", false)) {
+            if (!builderMethod.hasModifierProperty(PsiModifier.STATIC) || builderMethod.getParameterList().getParametersCount() != 0) {
+                continue;
+            }
+            PsiClass builderClass = PsiUtil.resolveClassInClassTypeOnly(builderMethod.getReturnType());
+            if (builderClass == null) {
+                continue;
+            }
+            for (PsiMethod buildMethod : builderClass.findMethodsByName("build", true)) {
+                PsiClass built = PsiUtil.resolveClassInClassTypeOnly(buildMethod.getReturnType());
+                if (buildMethod.getParameterList().getParametersCount() == 0 && built != null
+                        && InheritanceUtil.isInheritorOrSelf(built, psiClass, true)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -1,36 +1,115 @@
 package com.vv.testrike.generatetest;
 
 import com.intellij.psi.*;
+import com.intellij.psi.util.PsiUtil;
 import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Resolves the method calls of a method body once. It keeps the non void calls on fields, which may be stubbed
+ * when the field is a mock, and the methods of the tested class the body delegates to.
+ */
 class WalkingVisitor extends JavaRecursiveElementWalkingVisitor {
 
-    private final List<String> givenStatements;
-    private final DefaultValue defaultValue;
+    private final PsiClass testedClass;
+    private final List<FieldCall> fieldCalls;
+    private final Set<PsiMethod> helperMethods;
+    private int resolveCount;
 
-    WalkingVisitor() {
-        givenStatements = new ArrayList<>();
-        defaultValue = new DefaultValue();
+    WalkingVisitor(@NotNull PsiClass testedClass) {
+        this.testedClass = testedClass;
+        fieldCalls = new ArrayList<>();
+        helperMethods = new LinkedHashSet<>();
     }
 
     @Contract(pure = true)
-    List<String> getGivenStatements() {
-        return givenStatements;
+    List<FieldCall> getFieldCalls() {
+        return fieldCalls;
+    }
+
+    @Contract(pure = true)
+    Set<PsiMethod> getHelperMethods() {
+        return helperMethods;
+    }
+
+    /**
+     * The number of references resolved by the visitor.
+     */
+    @Contract(pure = true)
+    int getResolveCount() {
+        return resolveCount;
     }
 
     @Override
     public void visitMethodCallExpression(PsiMethodCallExpression methodCallExpression) {
+        super.visitMethodCallExpression(methodCallExpression);
+
         PsiReferenceExpression methodExpression = methodCallExpression.getMethodExpression();
-        PsiExpression qualifierExpression = methodExpression.getQualifierExpression();
-        PsiType returnType = methodCallExpression.resolveMethod().getReturnType();
+        PsiExpression qualifierExpression = PsiUtil.skipParenthesizedExprDown(methodExpression.getQualifierExpression());
+        if (qualifierExpression == null || qualifierExpression instanceof PsiThisExpression) {
+            PsiMethod method = methodCallExpression.resolveMethod();
+            resolveCount++;
+            if (method != null && method.getBody() != null && testedClass.equals(method.getContainingClass())) {
+                helperMethods.add(method);
+            }
+            return;
+        }
+
+        if (!(qualifierExpression instanceof PsiReferenceExpression)) {
+            return;
+        }
+        PsiElement qualifier = ((PsiReferenceExpression) qualifierExpression).resolve();
+        resolveCount++;
+        PsiType returnType = methodCallExpression.getType();
+        if (qualifier instanceof PsiField && returnType != null && !PsiType.VOID.equals(returnType)) {
+            PsiMethod calledMethod = methodCallExpression.resolveMethod();
+            resolveCount++;
+            fieldCalls.add(new FieldCall((PsiField) qualifier, methodExpression.getReferenceName(),
+                    getParameterTypes(methodCallExpression.getArgumentList(), calledMethod), returnType));
+        }
+    }
+
+    /**
+     * The types of the parameters the arguments are passed to, one per argument, so a variable arity parameter
+     * gets its component type for each of its arguments. If the call does not resolve, the types of the arguments.
+     */
+    @NotNull
+    private static List<PsiType> getParameterTypes(@NotNull PsiExpressionList argumentList, @Nullable PsiMethod calledMethod) {
+        PsiExpression[] arguments = argumentList.getExpressions();
+        PsiParameter[] parameters = calledMethod == null ? PsiParameter.EMPTY_ARRAY : calledMethod.getParameterList().getParameters();
+        List<PsiType> types = new ArrayList<>(arguments.length);
+        for (int i = 0; i < arguments.length; i++) {
+            PsiType type;
+            if (i < parameters.length - 1 || i < parameters.length && !calledMethod.isVarArgs()) {
+                type = parameters[i].getType();
+            } else if (parameters.length > 0 && calledMethod.isVarArgs()) {
+                PsiType varargType = parameters[parameters.length - 1].getType();
+                type = varargType instanceof PsiEllipsisType ? ((PsiEllipsisType) varargType).getComponentType() : varargType;
+            } else {
+                type = arguments[i].getType();
+            }
+            types.add(type == null ? PsiType.getJavaLangObject(argumentList.getManager(), argumentList.getResolveScope()) : type);
+        }
+        return types;
+    }
+
+    static final class FieldCall {
+        final PsiField field;
+        final String methodName;
+        final List<PsiType> parameterTypes;
+        final PsiType returnType;
 
-        if (qualifierExpression != null && !PsiType.VOID.equals(returnType)) {
-            String givenStatement = "org.mockito.Mockito.when(" + methodCallExpression.getText() +
-                    ").thenReturn(" + defaultValue.getDefaultReturnType(returnType) + ");";
-            givenStatements.add(givenStatement);
+        FieldCall(@NotNull PsiField field, String methodName, @NotNull List<PsiType> parameterTypes, @NotNull PsiType returnType) {
+            this.field = field;
+            this.methodName = methodName;
+            this.parameterTypes = parameterTypes;
+            this.returnType = returnType;
         }
     }
 }
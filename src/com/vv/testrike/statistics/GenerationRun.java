@@ -0,0 +1,110 @@
+package com.vv.testrike.statistics;
+
+import com.intellij.openapi.util.ThrowableComputable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The timers and counters of one generation run. The phases may be timed from several threads at once,
+ * in which case their times are summed, so the time of a concurrent phase can exceed the total time.
+ */
+public final class GenerationRun {
+
+    public static final String CLASSES = "classes";
+    public static final String METHODS = "methods";
+    public static final String STUBS = "stubs";
+    public static final String ELEMENTS_ADDED = "elementsAdded";
+    public static final String RESOLVES = "resolves";
+    public static final String VALUE_TYPES = "valueTypes";
+    public static final String REPAIRS = "repairs";
+
+    private final String kind;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, LongAdder> phaseNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, LongAdder> counters = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile long totalNanos = -1;
+
+    /**
+     * @param kind what is generated, the runs of the same kind are compared with each other
+     */
+    public GenerationRun(@NotNull String kind) {
+        this.kind = kind;
+    }
+
+    public <T, E extends Throwable> T time(@NotNull String phase, @NotNull ThrowableComputable<T, E> computable) throws E {
+        long start = System.nanoTime();
+        try {
+            return computable.compute();
+        } finally {
+            addTime(phase, System.nanoTime() - start);
+        }
+    }
+
+    public void addTime(@NotNull String phase, long nanos) {
+        phaseNanos.computeIfAbsent(phase, key -> new LongAdder()).add(nanos);
+    }
+
+    public void count(@NotNull String counter, long delta) {
+        counters.computeIfAbsent(counter, key -> new LongAdder()).add(delta);
+    }
+
+    void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    @NotNull
+    public String getKind() {
+        return kind;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * The wall clock time of the run, or -1 if it is not finished yet.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * The time of each phase, in the order the phases were first timed.
+     */
+    @NotNull
+    public Map<String, Long> getPhaseNanos() {
+        return snapshot(phaseNanos);
+    }
+
+    @NotNull
+    public Map<String, Long> getCounters() {
+        return snapshot(counters);
+    }
+
+    /**
+     * A single line of {@code key=value} pairs, with the times in milliseconds.
+     */
+    @NotNull
+    public String toLogString() {
+        StringBuilder text = new StringBuilder("kind=").append(kind.replace(' ', '_'))
+                .append(" totalMs=").append(TimeUnit.NANOSECONDS.toMillis(totalNanos));
+        getPhaseNanos().forEach((phase, nanos) -> text.append(" ").append(phase).append("Ms=").append(TimeUnit.NANOSECONDS.toMillis(nanos)));
+        getCounters().forEach((counter, value) -> text.append(" ").append(counter).append("=").append(value));
+        return text.toString();
+    }
+
+    @NotNull
+    private static Map<String, Long> snapshot(@NotNull Map<String, LongAdder> values) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        synchronized (values) {
+            values.forEach((key, value) -> result.put(key, value.sum()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package com.vv.testrike.statistics;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the last {@link #MAX_RUNS} finished generation runs of a project. Every finished run is also written
+ * to the IDE log as one line of {@code key=value} pairs, so the numbers can be attached to regression reports.
+ */
+public class GenerationStatistics {
+
+    private static final Logger LOG = Logger.getInstance(GenerationStatistics.class);
+
+    public static final Topic<Listener> TOPIC = Topic.create("Testrike generation statistics", Listener.class);
+
+    static final int MAX_RUNS = 50;
+
+    private final Project project;
+    private final Deque<GenerationRun> runs = new ArrayDeque<>();
+
+    public GenerationStatistics(@NotNull Project project) {
+        this.project = project;
+    }
+
+    public static GenerationStatistics getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, GenerationStatistics.class);
+    }
+
+    public void finish(@NotNull GenerationRun run) {
+        run.finish();
+        LOG.info("Testrike generation: " + run.toLogString());
+        synchronized (runs) {
+            if (runs.size() == MAX_RUNS) {
+                runs.removeFirst();
+            }
+            runs.addLast(run);
+        }
+        if (!project.isDisposed()) {
+            project.getMessageBus().syncPublisher(TOPIC).runFinished(run);
+        }
+    }
+
+    /**
+     * The finished runs, the oldest first.
+     */
+    @NotNull
+    public List<GenerationRun> getRuns() {
+        synchronized (runs) {
+            return new ArrayList<>(runs);
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called on the thread which finished the run.
+         */
+        void runFinished(@NotNull GenerationRun run);
+    }
+}
@@ -0,0 +1,112 @@
+package com.vv.testrike.statistics;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shows the last generation runs, the newest first, and the percentiles of their phase times per kind of run.
+ */
+class GenerationStatisticsPanel extends JPanel {
+
+    private static final String[] RUN_COLUMNS = {"Started", "Kind", "Total ms", "Classes", "Methods", "Stubs", "Elements added", "Resolves", "Value types", "Repairs", "Phases (ms)"};
+    private static final String[] COUNTERS = {
+            GenerationRun.CLASSES, GenerationRun.METHODS, GenerationRun.STUBS, GenerationRun.ELEMENTS_ADDED, GenerationRun.RESOLVES,
+            GenerationRun.VALUE_TYPES, GenerationRun.REPAIRS};
+    private static final String[] PERCENTILE_COLUMNS = {"Kind", "Phase", "Runs", "p50 ms", "p90 ms", "p99 ms", "Max ms"};
+
+    private final Project project;
+    private final DefaultTableModel runsModel = new ReadOnlyTableModel(RUN_COLUMNS);
+    private final DefaultTableModel percentilesModel = new ReadOnlyTableModel(PERCENTILE_COLUMNS);
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    GenerationStatisticsPanel(@NotNull Project project) {
+        super(new BorderLayout());
+        this.project = project;
+
+        JBSplitter splitter = new JBSplitter(true, 0.6f);
+        splitter.setFirstComponent(new JBScrollPane(new JBTable(runsModel)));
+        splitter.setSecondComponent(new JBScrollPane(new JBTable(percentilesModel)));
+        add(splitter, BorderLayout.CENTER);
+        refresh();
+    }
+
+    /**
+     * Refreshes the tables on the event dispatch thread; the runs finished meanwhile are shown by one refresh.
+     */
+    void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().invokeLater(() -> {
+                refreshScheduled.set(false);
+                refresh();
+            }, ModalityState.any(), project.getDisposed());
+        }
+    }
+
+    private void refresh() {
+        List<GenerationRun> runs = GenerationStatistics.getInstance(project).getRuns();
+        Collections.reverse(runs);
+
+        runsModel.setRowCount(0);
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+        for (GenerationRun run : runs) {
+            List<Object> row = new ArrayList<>();
+            row.add(timeFormat.format(new Date(run.getStartMillis())));
+            row.add(run.getKind());
+            row.add(TimeUnit.NANOSECONDS.toMillis(run.getTotalNanos()));
+            Map<String, Long> counters = run.getCounters();
+            for (String counter : COUNTERS) {
+                row.add(counters.getOrDefault(counter, 0L));
+            }
+            StringJoiner phases = new StringJoiner(", ");
+            run.getPhaseNanos().forEach((phase, nanos) -> phases.add(phase + " " + TimeUnit.NANOSECONDS.toMillis(nanos)));
+            row.add(phases.toString());
+            runsModel.addRow(row.toArray());
+        }
+
+        percentilesModel.setRowCount(0);
+        Map<String, Map<String, List<Long>>> timesByKind = new TreeMap<>();
+        for (GenerationRun run : runs) {
+            Map<String, List<Long>> times = timesByKind.computeIfAbsent(run.getKind(), kind -> new LinkedHashMap<>());
+            times.computeIfAbsent("total", phase -> new ArrayList<>()).add(run.getTotalNanos());
+            run.getPhaseNanos().forEach((phase, nanos) -> times.computeIfAbsent(phase, key -> new ArrayList<>()).add(nanos));
+        }
+        timesByKind.forEach((kind, times) -> times.forEach((phase, nanos) -> {
+            Collections.sort(nanos);
+            percentilesModel.addRow(new Object[]{kind, phase, nanos.size(),
+                    percentile(nanos, 50), percentile(nanos, 90), percentile(nanos, 99), percentile(nanos, 100)});
+        }));
+    }
+
+    /**
+     * The nearest-rank percentile of the sorted times, in milliseconds.
+     */
+    static long percentile(@NotNull List<Long> sortedNanos, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sortedNanos.size());
+        return TimeUnit.NANOSECONDS.toMillis(sortedNanos.get(Math.max(rank, 1) - 1));
+    }
+
+    private static final class ReadOnlyTableModel extends DefaultTableModel {
+        ReadOnlyTableModel(@NotNull String[] columns) {
+            super(columns, 0);
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    }
+}
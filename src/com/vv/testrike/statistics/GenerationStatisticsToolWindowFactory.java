@@ -0,0 +1,20 @@
+package com.vv.testrike.statistics;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+public class GenerationStatisticsToolWindowFactory implements ToolWindowFactory, DumbAware {
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        GenerationStatisticsPanel panel = new GenerationStatisticsPanel(project);
+        Content content = ContentFactory.SERVICE.getInstance().createContent(panel, "", false);
+        toolWindow.getContentManager().addContent(content);
+        project.getMessageBus().connect(content).subscribe(GenerationStatistics.TOPIC, run -> panel.scheduleRefresh());
+    }
+}
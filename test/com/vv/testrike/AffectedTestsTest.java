@@ -0,0 +1,38 @@
+package com.vv.testrike;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class AffectedTestsTest extends LightTestrikeTestCase {
+
+    private static final String BEFORE = "package com.example; public class OrderService {\n" +
+            "    public int countOrders(String customer) {\n" +
+            "        return 0;\n" +
+            "    }\n" +
+            "    public void cancel(int id) {\n" +
+            "    }\n" +
+            "}";
+
+    public void testMapsChangedMethodToTestMethodsCallingIt() {
+        myFixture.addClass("package org.mockito; public @interface InjectMocks {}");
+        myFixture.addClass("package com.example; import org.mockito.InjectMocks; public class OrderServiceTest {\n" +
+                "    @InjectMocks private OrderService service;\n" +
+                "    public void testCountOrders_Should_When() { service.countOrders(\"\"); }\n" +
+                "    public void testCancel_Should_When() { service.cancel(0); }\n" +
+                "}");
+        myFixture.configureByText("OrderService.java", BEFORE.replace("return 0;", "return customer.length();"));
+
+        Set<PsiMethod> changedMethods = AffectedTests.findChangedMethods(myFixture.getFile(), BEFORE, new EmptyProgressIndicator());
+        assertEquals(1, changedMethods.size());
+        assertEquals("countOrders", changedMethods.iterator().next().getName());
+
+        Set<PsiElement> tests = AffectedTests.findTests(changedMethods);
+        assertEquals(Collections.singletonList("testCountOrders_Should_When"),
+                tests.stream().map(test -> ((PsiMethod) test).getName()).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,70 @@
+package com.vv.testrike;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+
+import java.util.Collections;
+import java.util.List;
+
+public class GotoLinkedTestHandlerTest extends LightTestrikeTestCase {
+
+    private PsiClass productionClass;
+    private PsiClass testClass;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addClass("package org.mockito; public @interface InjectMocks {}");
+        productionClass = myFixture.addClass("package com.example; public class OrderService {\n" +
+                "    public int countOrders(String customer) { return 0; }\n" +
+                "    public void cancel(int id) {}\n" +
+                "}");
+        testClass = myFixture.addClass("package com.example; import org.mockito.InjectMocks; public class OrderServiceSpec {\n" +
+                "    @InjectMocks private OrderService service;\n" +
+                "    public void testCountOrders_Should_When() { service.countOrders(\"\"); }\n" +
+                "    public void testCountOrders2_Should_When() { service.countOrders(null); }\n" +
+                "}");
+    }
+
+    public void testFindsTestMethodsCallingTheMethod() {
+        List<PsiElement> tests = GotoLinkedTestHandler.findTests(productionClass, productionClass.findMethodsByName("countOrders", false)[0]);
+
+        assertEquals(2, tests.size());
+        assertEquals("testCountOrders_Should_When", ((PsiMethod) tests.get(0)).getName());
+        assertEquals("testCountOrders2_Should_When", ((PsiMethod) tests.get(1)).getName());
+    }
+
+    public void testFindsTestClassOfUntestedMethod() {
+        assertTrue(GotoLinkedTestHandler.hasLinkedTests(productionClass));
+        assertEquals(Collections.singletonList(testClass),
+                GotoLinkedTestHandler.findTests(productionClass, productionClass.findMethodsByName("cancel", false)[0]));
+    }
+
+    public void testFindsSubjectOfTestMethod() {
+        assertTrue(GotoLinkedTestHandler.isTestClass(testClass));
+        assertEquals(Collections.singletonList(productionClass.findMethodsByName("countOrders", false)[0]),
+                GotoLinkedTestHandler.findSubjects(testClass, testClass.findMethodsByName("testCountOrders_Should_When", false)[0]));
+    }
+
+    public void testFindsSubjectOfDirectConstructionTest() {
+        PsiClass directTest = myFixture.addClass("package com.example.direct; import com.example.OrderService;\n" +
+                "public class OrderServiceTest {\n" +
+                "    private final OrderService service = new OrderService();\n" +
+                "    public void testCancel_Should_When() { service.cancel(0); }\n" +
+                "}");
+
+        assertTrue(GotoLinkedTestHandler.isTestClass(directTest));
+        assertEquals(Collections.singletonList(productionClass.findMethodsByName("cancel", false)[0]),
+                GotoLinkedTestHandler.findSubjects(directTest, directTest.findMethodsByName("testCancel_Should_When", false)[0]));
+    }
+
+    public void testProductionClassConstructingItsPartIsNoTest() {
+        myFixture.addClass("package com.example; public class Lock {}");
+        PsiClass lockManager = myFixture.addClass("package com.example; public class LockManager {\n" +
+                "    private final Lock lock = new Lock();\n" +
+                "}");
+
+        assertFalse(GotoLinkedTestHandler.isTestClass(lockManager));
+    }
+}
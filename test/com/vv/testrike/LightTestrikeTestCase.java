@@ -0,0 +1,38 @@
+package com.vv.testrike;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.projectRoots.JavaSdk;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.fixtures.DefaultLightProjectDescriptor;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+
+public abstract class LightTestrikeTestCase extends LightCodeInsightFixtureTestCase {
+
+    private static class MyDescriptor extends DefaultLightProjectDescriptor {
+        @Override
+        public Sdk getSdk() {
+            return JavaSdk.getInstance().createJdk("1.8", new File(getSourceRoot(), "mockJDK-1.8").getPath(), false);
+        }
+    }
+
+    @NotNull
+    @Override
+    protected LightProjectDescriptor getProjectDescriptor() {
+        return new MyDescriptor();
+    }
+
+    @Override
+    protected String getTestDataPath() {
+        return new File(getSourceRoot(), "testData").getPath();
+    }
+
+    @NotNull
+    private static File getSourceRoot() {
+        String testOutput = PathManager.getJarPathForClass(LightTestrikeTestCase.class);
+        return new File(testOutput, "../../..");
+    }
+}
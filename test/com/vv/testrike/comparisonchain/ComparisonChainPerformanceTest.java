@@ -0,0 +1,54 @@
+package com.vv.testrike.comparisonchain;
+
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.vv.testrike.LightTestrikeTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time budgets of the compareTo() generator and the compareTo()/equals() inspection
+ * on synthesized classes.
+ */
+public class ComparisonChainPerformanceTest extends LightTestrikeTestCase {
+
+    public void testGenerateCompareToForThousandFields() throws Exception {
+        StringBuilder text = new StringBuilder("public class Wide {\n");
+        for (int i = 0; i < 1000; i++) {
+            text.append("private String field").append(i).append(";\n");
+        }
+        text.append("}");
+        PsiClass psiClass = myFixture.addClass(text.toString());
+        List<PsiField> fields = Arrays.asList(psiClass.getFields());
+
+        PlatformTestUtil.startPerformanceTest("generate compareTo() of 1000 fields", 10000,
+                () -> new GenerateAction().generateComparable(psiClass, fields)).attempts(1).assertTiming();
+    }
+
+    public void testInspectionOnThousandFields() throws Exception {
+        StringBuilder text = new StringBuilder("public class Wide implements Comparable<Wide> {\n");
+        for (int i = 0; i < 1000; i++) {
+            text.append("private int field").append(i).append(";\n");
+        }
+        text.append("public boolean equals(Object o) {\nWide that = (Wide) o;\nreturn true");
+        for (int i = 0; i < 1000; i++) {
+            text.append("\n&& field").append(i).append(" == that.field").append(i);
+        }
+        text.append(";\n}\npublic int compareTo(Wide that) {\nint result = 0;\n");
+        for (int i = 0; i < 999; i++) {
+            text.append("if (result == 0 && field").append(i).append(" != that.field").append(i)
+                    .append(") result = field").append(i).append(" < that.field").append(i).append(" ? -1 : 1;\n");
+        }
+        text.append("return result;\n}\n}");
+        myFixture.configureByText("Wide.java", text.toString());
+        myFixture.enableInspections(EqualsCompareConsistencyInspection.class);
+
+        PlatformTestUtil.startPerformanceTest("highlight equals() and compareTo() of 1000 fields", 5000, () -> {
+            myFixture.getPsiManager().dropPsiCaches();
+            assertSize(1, myFixture.doHighlighting(HighlightSeverity.WARNING));
+        }).assertTiming();
+    }
+}
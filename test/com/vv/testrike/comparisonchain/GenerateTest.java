@@ -1,54 +1,44 @@
 package com.vv.testrike.comparisonchain;
 
 import com.intellij.codeInsight.intention.IntentionAction;
-import com.intellij.openapi.application.PathManager;
-import com.intellij.openapi.projectRoots.JavaSdk;
-import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiField;
 import com.intellij.psi.util.PsiTreeUtil;
-import com.intellij.testFramework.LightProjectDescriptor;
-import com.intellij.testFramework.fixtures.DefaultLightProjectDescriptor;
-import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
-import org.jetbrains.annotations.NotNull;
+import com.vv.testrike.LightTestrikeTestCase;
 
-import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
-public class GenerateTest extends LightCodeInsightFixtureTestCase {
+public class GenerateTest extends LightTestrikeTestCase {
 
-    private static class MyDescriptor extends DefaultLightProjectDescriptor {
-        @Override
-        public Sdk getSdk() {
-            return JavaSdk.getInstance().createJdk("1.8", new File(getSourceRoot(), "mockJDK-1.8").getPath(), false);
-        }
+    public void testSimple() {
+        myFixture.configureByFile("before" + getTestName(false) + ".java");
+        PsiElement elementAtCaret = myFixture.getFile().findElementAt(myFixture.getCaretOffset());
+        PsiClass simpleClass = PsiTreeUtil.getParentOfType(elementAtCaret, PsiClass.class);
+        List<PsiField> fields = Collections.singletonList(simpleClass.findFieldByName("foo", false));
+        new GenerateAction().generateComparable(simpleClass, fields);
+        myFixture.checkResultByFile("after" + getTestName(false) + ".java");
     }
 
-    @NotNull
-    @Override
-    protected LightProjectDescriptor getProjectDescriptor() {
-        return new MyDescriptor();
+    public void testHandWritten() {
+        generateAllFields(CompareToStyle.HAND_WRITTEN, true, false);
     }
 
-    @Override
-    protected String getTestDataPath() {
-        return new File(getSourceRoot(), "testData").getPath();
+    public void testComparatorConstant() {
+        generateAllFields(CompareToStyle.COMPARATOR_CONSTANT, false, false);
     }
 
-    @NotNull
-    private static File getSourceRoot() {
-        String testOutput = PathManager.getJarPathForClass(GenerateTest.class);
-        return new File(testOutput, "../../..");
+    public void testCachedHashCode() {
+        generateAllFields(CompareToStyle.HAND_WRITTEN, false, true);
     }
 
-    public void testSimple() {
+    private void generateAllFields(CompareToStyle style, boolean primitivesFirst, boolean equalsAndHashCode) {
         myFixture.configureByFile("before" + getTestName(false) + ".java");
         PsiElement elementAtCaret = myFixture.getFile().findElementAt(myFixture.getCaretOffset());
-        PsiClass simpleClass = PsiTreeUtil.getParentOfType(elementAtCaret, PsiClass.class);
-        List<PsiField> fields = Collections.singletonList(simpleClass.findFieldByName("foo", false));
-        new GenerateAction().generateComparable(simpleClass, fields);
+        PsiClass psiClass = PsiTreeUtil.getParentOfType(elementAtCaret, PsiClass.class);
+        new GenerateAction().generateComparable(psiClass, Arrays.asList(psiClass.getFields()), style, primitivesFirst, equalsAndHashCode);
         myFixture.checkResultByFile("after" + getTestName(false) + ".java");
     }
 
@@ -57,7 +47,51 @@ public class GenerateTest extends LightCodeInsightFixtureTestCase {
         myFixture.testHighlighting(true, false, false, "inspection.java");
     }
 
+    public void testInspectionAllFields() {
+        myFixture.enableInspections(EqualsCompareConsistencyInspection.class);
+        myFixture.testHighlighting(true, false, false, "inspectionAllFields.java");
+    }
+
+    public void testCompareFalseFirst() {
+        addComparisonChain();
+        myFixture.enableInspections(CompareFalseFirstInspection.class);
+        myFixture.testHighlighting(true, false, false, "compareFalseFirst.java");
+    }
+
+    private void addComparisonChain() {
+        myFixture.addClass("package com.google.common.collect;\n" +
+                "public abstract class ComparisonChain {\n" +
+                "    public static ComparisonChain start() { return null; }\n" +
+                "    public abstract ComparisonChain compare(Comparable<?> left, Comparable<?> right);\n" +
+                "    public abstract ComparisonChain compare(int left, int right);\n" +
+                "    public abstract ComparisonChain compare(boolean left, boolean right);\n" +
+                "    public abstract ComparisonChain compareFalseFirst(boolean left, boolean right);\n" +
+                "    public abstract int result();\n" +
+                "}");
+    }
+
+    public void testComparatorAllocation() {
+        myFixture.enableInspections(ComparatorAllocationInspection.class);
+        myFixture.testHighlighting(true, false, false, "comparatorAllocation.java");
+    }
+
+    public void testComparingInt() {
+        launchComparatorAllocationFix("Replace with comparingInt()");
+    }
+
+    public void testHoistComparator() {
+        launchComparatorAllocationFix("Move comparator to a static final constant");
+    }
+
+    private void launchComparatorAllocationFix(String fixName) {
+        myFixture.enableInspections(ComparatorAllocationInspection.class);
+        myFixture.configureByFile("before" + getTestName(false) + ".java");
+        myFixture.launchAction(myFixture.findSingleIntention(fixName));
+        myFixture.checkResultByFile("after" + getTestName(false) + ".java");
+    }
+
     public void testIntention() {
+        addComparisonChain();
         myFixture.configureByFile("before" + getTestName(false) + ".java");
         IntentionAction intention = myFixture.findSingleIntention("Replace with compareFalseFirst()");
         myFixture.launchAction(intention);
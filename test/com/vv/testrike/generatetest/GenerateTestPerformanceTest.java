@@ -0,0 +1,90 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.vv.testrike.LightTestrikeTestCase;
+import com.vv.testrike.statistics.GenerationRun;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time budgets of test generation on synthesized production classes.
+ */
+public class GenerateTestPerformanceTest extends LightTestrikeTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addClass("package javax.inject; public @interface Inject {}");
+        myFixture.addClass("package perf; public interface Dependency { int value(); Dependency next(); }");
+    }
+
+    public void testThousandInjectedFields() throws Exception {
+        StringBuilder text = new StringBuilder("package perf; public class WideService {\n");
+        for (int i = 0; i < 1000; i++) {
+            text.append("@javax.inject.Inject private Dependency dependency").append(i).append(";\n");
+        }
+        text.append("public int sum() { return dependency0.value(); }\n}");
+        PsiClass psiClass = myFixture.addClass(text.toString());
+
+        PlatformTestUtil.startPerformanceTest("analyze and render 1000 injected fields", 2000,
+                () -> analyzeAndRender(psiClass)).assertTiming();
+    }
+
+    public void testFiveHundredMethods() throws Exception {
+        StringBuilder text = new StringBuilder("package perf; public class LongService {\n")
+                .append("@javax.inject.Inject private Dependency dependency;\n");
+        for (int i = 0; i < 500; i++) {
+            text.append("public int method").append(i).append("(int a, String b, java.util.List<String> c) {\n")
+                    .append("return dependency.value() + dependency.next().value();\n}\n");
+        }
+        text.append("}");
+        PsiClass psiClass = myFixture.addClass(text.toString());
+
+        PlatformTestUtil.startPerformanceTest("analyze and render 500 methods", 5000,
+                () -> analyzeAndRender(psiClass)).assertTiming();
+    }
+
+    public void testDeeplyNestedCallChain() throws Exception {
+        StringBuilder chain = new StringBuilder("dependency");
+        for (int i = 0; i < 300; i++) {
+            chain.append(".next()");
+        }
+        PsiClass psiClass = myFixture.addClass("package perf; public class ChainService {\n"
+                + "@javax.inject.Inject private Dependency dependency;\n"
+                + "public int last() { return " + chain + ".value(); }\n}");
+
+        PlatformTestUtil.startPerformanceTest("analyze and render a call chain of 300 calls", 3000,
+                () -> analyzeAndRender(psiClass)).assertTiming();
+    }
+
+    public void testPackageOfThousandClasses() throws Exception {
+        List<PsiClass> classes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            classes.add(myFixture.addClass("package perf.many; public class Service" + i + " {\n"
+                    + "@javax.inject.Inject private perf.Dependency dependency;\n"
+                    + "public int value(int a) { return dependency.value() + a; }\n}"));
+        }
+        PsiDirectory testDirectory = myFixture.getPsiManager().findDirectory(myFixture.getTempDirFixture().findOrCreateDir("generated"));
+        assertNotNull(testDirectory);
+
+        PlatformTestUtil.startPerformanceTest("generate the tests of 1000 classes", 60000, () -> {
+            TestClassAnalyzer analyzer = new TestClassAnalyzer();
+            TestClassGenerator generator = new TestClassGenerator(getProject());
+            GenerationRun run = new GenerationRun("test classes");
+            WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+                for (PsiClass psiClass : classes) {
+                    generator.generate(analyzer.analyze(psiClass, TestLibraryAvailable.JUNIT_JUPITER), testDirectory, run);
+                }
+            });
+        }).attempts(1).assertTiming();
+    }
+
+    private static void analyzeAndRender(PsiClass psiClass) {
+        TestClassModel model = new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.JUNIT_JUPITER);
+        new TestClassRenderer().render(model);
+    }
+}
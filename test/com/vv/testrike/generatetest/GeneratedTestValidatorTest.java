@@ -0,0 +1,121 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.SmartPointerManager;
+import com.vv.testrike.LightTestrikeTestCase;
+import com.vv.testrike.generatetest.TestClassModel.MethodTest;
+import com.vv.testrike.generatetest.TestClassModel.MockField;
+
+import java.util.Collections;
+
+public class GeneratedTestValidatorTest extends LightTestrikeTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addClass("package javax.inject; public @interface Inject {}");
+        myFixture.addClass("package org.mockito.stubbing; public interface OngoingStubbing<T> { OngoingStubbing<T> thenReturn(T value); }");
+        myFixture.addClass("package org.mockito; public class ArgumentMatchers {\n" +
+                "    public static <T> T any(Class<T> type) { return null; }\n" +
+                "}");
+        myFixture.addClass("package org.mockito; public class Mockito extends ArgumentMatchers {\n" +
+                "    public static <T> org.mockito.stubbing.OngoingStubbing<T> when(T call) { return null; }\n" +
+                "    public static <T> T mock(Class<T> type) { return null; }\n" +
+                "}");
+        myFixture.addClass("package com.example; public interface OrderRepository {\n" +
+                "    int count(String customer);\n" +
+                "    String find(String key);\n" +
+                "    String find(Integer key);\n" +
+                "}");
+    }
+
+    public void testStubsOfAnalysisNeedNoRepair() {
+        PsiClass psiClass = myFixture.addClass("package com.example; import javax.inject.Inject; public class KeyService {\n" +
+                "    @Inject private OrderRepository orderRepository;\n" +
+                "    public String load(String key) { return orderRepository.find(key); }\n" +
+                "}");
+
+        TestValidation validation = validate(new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.JUNIT_JUPITER));
+
+        assertEmpty(validation.getRepairs());
+        assertTrue(validation.getText(), validation.getText()
+                .contains("Mockito.when(orderRepository.find(ArgumentMatchers.any(String.class))).thenReturn(\"\");"));
+    }
+
+    public void testMatchesUnresolvedArgumentsOfStub() {
+        TestValidation validation = validate(createStubModel("org.mockito.Mockito.when(orderRepository.count(customer)).thenReturn(0);"));
+
+        assertSize(1, validation.getRepairs());
+        assertTrue(validation.getText(), validation.getText()
+                .contains("Mockito.when(orderRepository.count(org.mockito.ArgumentMatchers.any(java.lang.String.class))).thenReturn(0);"));
+    }
+
+    public void testRepairsStubAddedToExistingTest() {
+        TestClassModel model = createStubModel("org.mockito.Mockito.when(orderRepository.count(customer)).thenReturn(0);");
+        PsiClass testClass = myFixture.addClass("package com.example; public class StockServiceTest {}");
+
+        TestValidation validation = new GeneratedTestValidator(getProject()).validateMembers(model, testClass);
+
+        assertSize(1, validation.getRepairs());
+        String method = validation.getMembers().get(validation.getMembers().size() - 1);
+        assertTrue(method, method.contains("orderRepository.count(org.mockito.ArgumentMatchers.any(java.lang.String.class))"));
+        assertEmpty(validation.getText());
+        // the new fields are known to the new methods
+        assertFalse(validation.getProblems().toString(), validation.getProblems().toString().contains("cannot resolve orderRepository"));
+        assertFalse(validation.getProblems().toString(), validation.getProblems().toString().contains("cannot resolve stockService"));
+    }
+
+    public void testDropsStubOfAmbiguousCall() {
+        TestValidation validation = validate(createStubModel("org.mockito.Mockito.when(orderRepository.find(key)).thenReturn(\"\");"));
+
+        assertSize(1, validation.getRepairs());
+        assertFalse(validation.getText(), validation.getText().contains("when("));
+        assertFalse(validation.getText(), validation.getText().contains(TestClassRenderer.GIVEN_COMMENT));
+        assertTrue(validation.getText(), validation.getText().contains("stockService.stock(\"\");"));
+    }
+
+    public void testMocksConstructionOfInterface() {
+        TestValidation validation = validate(createModel("new com.example.OrderRepository()"));
+
+        assertSize(1, validation.getRepairs());
+        assertTrue(validation.getText(), validation.getText()
+                .contains("countService.count(org.mockito.Mockito.mock(com.example.OrderRepository.class));"));
+    }
+
+    public void testReportsUnrepairedProblems() {
+        TestValidation validation = validate(createModel("unknownValue"));
+
+        assertEmpty(validation.getRepairs());
+        assertContainsElements(validation.getProblems(), "CountServiceTest.testCount_Should_When: cannot resolve unknownValue");
+    }
+
+    private TestClassModel createModel(String argument) {
+        PsiClass psiClass = myFixture.addClass("package com.example; public class CountService {\n" +
+                "    public int count(OrderRepository repository) { return 0; }\n" +
+                "}");
+        return new TestClassModel(SmartPointerManager.getInstance(getProject()).createSmartPsiElementPointer(psiClass), 0,
+                "com.example", "CountServiceTest", TestLibraryAvailable.JUNIT_JUPITER, TestRunnerMode.MOCKITO_EXTENSION, false,
+                new MockField("private", "com.example.CountService", "countService"), Collections.emptyList(),
+                Collections.singletonList(new MethodTest("count", "testCount_Should_When", Collections.emptyList(),
+                        Collections.singletonList(argument),
+                        Collections.singletonList("com.example.OrderRepository"), Collections.emptySet(), true, true)));
+    }
+
+    private TestClassModel createStubModel(String givenStatement) {
+        PsiClass psiClass = myFixture.addClass("package com.example; import javax.inject.Inject; public class StockService {\n" +
+                "    @Inject private OrderRepository orderRepository;\n" +
+                "    public int stock(String key) { return 0; }\n" +
+                "}");
+        return new TestClassModel(SmartPointerManager.getInstance(getProject()).createSmartPsiElementPointer(psiClass), 0,
+                "com.example", "StockServiceTest", TestLibraryAvailable.JUNIT_JUPITER, TestRunnerMode.MOCKITO_EXTENSION, false,
+                new MockField("private", "com.example.StockService", "stockService"),
+                Collections.singletonList(new MockField("private", "com.example.OrderRepository", "orderRepository")),
+                Collections.singletonList(new MethodTest("stock", "testStock_Should_When", Collections.singletonList(givenStatement),
+                        Collections.singletonList("\"\""),
+                        Collections.singletonList("java.lang.String"), Collections.emptySet(), true, true)));
+    }
+
+    private TestValidation validate(TestClassModel model) {
+        return new GeneratedTestValidator(getProject()).validate(model);
+    }
+}
@@ -0,0 +1,49 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.vv.testrike.LightTestrikeTestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class StubDiscoveryTest extends LightTestrikeTestCase {
+
+    private PsiClass psiClass;
+    private Map<PsiField, String> mocks;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addClass("package com.example; public interface Repository { int count(); String name(int id); Repository self(); }");
+        psiClass = myFixture.addClass("package com.example; public class Service {\n" +
+                "    private Repository repository;\n" +
+                "    private Repository notMocked;\n" +
+                "    public int direct() { return repository.count() + repository.count() + notMocked.count(); }\n" +
+                "    public String delegating() { return helper(1); }\n" +
+                "    public int local() { Repository local = repository.self(); return local.count(); }\n" +
+                "    private String helper(int id) { return deeper(id) + repository.name(id); }\n" +
+                "    private String deeper(int id) { repository.count(); return \"\"; }\n" +
+                "}");
+        mocks = Collections.singletonMap(psiClass.findFieldByName("repository", false), "repositoryMock");
+    }
+
+    public void testStubsMockCallsOnceAndSkipsOtherQualifiers() {
+        assertEquals(Collections.singletonList("org.mockito.Mockito.when(repositoryMock.count()).thenReturn(0);"),
+                new StubDiscovery(0).discover(psiClass.findMethodsByName("direct", false)[0], mocks));
+    }
+
+    public void testSkipsCallsOnLocals() {
+        assertEquals(Collections.singletonList("org.mockito.Mockito.when(repositoryMock.self()).thenReturn(org.mockito.Mockito.mock(com.example.Repository.class));"),
+                new StubDiscovery(0).discover(psiClass.findMethodsByName("local", false)[0], mocks));
+    }
+
+    public void testFollowsHelpersUpToDepth() {
+        assertEquals(Collections.singletonList("org.mockito.Mockito.when(repositoryMock.name(org.mockito.ArgumentMatchers.anyInt())).thenReturn(\"\");"),
+                new StubDiscovery(1).discover(psiClass.findMethodsByName("delegating", false)[0], mocks));
+        assertEquals(Arrays.asList("org.mockito.Mockito.when(repositoryMock.name(org.mockito.ArgumentMatchers.anyInt())).thenReturn(\"\");",
+                "org.mockito.Mockito.when(repositoryMock.count()).thenReturn(0);"),
+                new StubDiscovery(2).discover(psiClass.findMethodsByName("delegating", false)[0], mocks));
+    }
+}
@@ -0,0 +1,231 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.vv.testrike.LightTestrikeTestCase;
+import com.vv.testrike.statistics.GenerationRun;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+public class TestClassRendererTest extends LightTestrikeTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addClass("package javax.inject; public @interface Inject {}");
+        myFixture.addClass("package com.example; public interface OrderRepository { int count(String customer); }");
+        myFixture.addClass("package org.mockito; public class Mockito {}");
+        myFixture.addClass("package org.mockito; public class ArgumentMatchers {}");
+    }
+
+    public void testRender() {
+        myFixture.configureByFile("generatetest/OrderService.java");
+        PsiElement elementAtCaret = myFixture.getFile().findElementAt(myFixture.getCaretOffset());
+        PsiClass psiClass = PsiTreeUtil.getParentOfType(elementAtCaret, PsiClass.class);
+
+        TestClassModel model = new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.JUNIT_JUPITER);
+        String text = new TestClassRenderer().render(model);
+
+        assertSameLinesWithFile(new File(getTestDataPath(), "generatetest/OrderServiceTest.java").getPath(), text);
+    }
+
+    public void testRenderDirectConstruction() {
+        PsiClass psiClass = myFixture.addClass("package com.example; import javax.inject.Inject; public class InvoiceService {\n" +
+                "    private final OrderRepository orderRepository;\n" +
+                "    @Inject public InvoiceService(OrderRepository orderRepository) { this.orderRepository = orderRepository; }\n" +
+                "    public int count() { return orderRepository.count(\"\"); }\n" +
+                "}");
+
+        TestClassModel model = new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.JUNIT_JUPITER);
+        String text = new TestClassRenderer().render(model);
+
+        assertEquals(TestRunnerMode.DIRECT_CONSTRUCTION, model.getRunnerMode());
+        assertFalse(text, text.contains("@ExtendWith"));
+        assertTrue(text, text.contains("private final OrderRepository orderRepository = Mockito.mock(OrderRepository.class);"));
+        assertTrue(text, text.contains("private final InvoiceService invoiceService = new InvoiceService(orderRepository);"));
+    }
+
+    public void testRenderMockInitializationWithoutRunner() {
+        PsiClass psiClass = myFixture.addClass("package com.example; import javax.inject.Inject; public class RefundService {\n" +
+                "    @Inject private OrderRepository orderRepository;\n" +
+                "    public int refund(String customer) { return orderRepository.count(customer); }\n" +
+                "}");
+
+        TestClassModel model = new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.JUNIT_3);
+        String text = new TestClassRenderer().render(model);
+
+        assertEquals(TestRunnerMode.MOCKITO_EXTENSION, model.getRunnerMode());
+        assertFalse(text, text.contains("@RunWith"));
+        assertTrue(text, text.contains("public class RefundServiceTest extends TestCase {"));
+        assertTrue(text, text.contains("super.setUp();\n        MockitoAnnotations.initMocks(this);"));
+        String withoutLibrary = new TestClassRenderer().render(new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.NON));
+        assertTrue(withoutLibrary, withoutLibrary.contains("public void setUp() {\n        MockitoAnnotations.initMocks(this);"));
+        assertTrue(withoutLibrary, withoutLibrary.contains("public void testRefund_Should_When() {\n        setUp();\n        //  given"));
+    }
+
+    public void testShortensOnlyClassReferencesOfArguments() {
+        myFixture.addClass("package com.example; public enum Limits { DEFAULT }");
+        PsiClass psiClass = myFixture.addClass("package com.example; public class QuotaService {\n" +
+                "    public int check(Limits limits) { return 0; }\n" +
+                "}");
+        TestClassModel model = new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.JUNIT_JUPITER);
+        TestClassModel.MethodTest methodTest = model.getMethodTests().get(0);
+
+        assertEquals(Collections.singleton("com.example.Limits"), methodTest.getClassNames());
+        ImportCollector imports = new ImportCollector("com.example.test");
+        assertEquals("Limits.DEFAULT, config.MAX_SIZE",
+                imports.shorten(methodTest.getArguments().get(0) + ", config.MAX_SIZE", methodTest.getClassNames()));
+        assertEquals(Collections.singleton("com.example.Limits"), imports.getImports());
+    }
+
+    public void testStaticStateIsNotParallelSafe() {
+        PsiClass counter = myFixture.addClass("package com.example; public class Counter {\n" +
+                "    private static final java.util.List<String> SEEN = new java.util.ArrayList<>();\n" +
+                "    public void count(String name) { SEEN.add(name); }\n" +
+                "}");
+        PsiClass formatter = myFixture.addClass("package com.example; public class Formatter {\n" +
+                "    private static final String PREFIX = \"#\";\n" +
+                "    public String format(String name) { return PREFIX + name; }\n" +
+                "}");
+
+        TestClassModel counterModel = new TestClassAnalyzer().analyze(counter, TestLibraryAvailable.JUNIT_JUPITER);
+        TestClassModel formatterModel = new TestClassAnalyzer().analyze(formatter, TestLibraryAvailable.JUNIT_JUPITER);
+
+        assertFalse(counterModel.isParallelSafe());
+        assertFalse(new TestClassRenderer().render(counterModel).contains("@Execution"));
+        assertTrue(formatterModel.isParallelSafe());
+        assertTrue(new TestClassRenderer().render(formatterModel).contains("@Execution(ExecutionMode.CONCURRENT)"));
+    }
+
+    public void testImmutableConstantsAreParallelSafe() {
+        PsiClass money = myFixture.addClass("package com.example; public class Money {\n" +
+                "    public static final Money ZERO = new Money(0);\n" +
+                "    private final long cents;\n" +
+                "    public Money(long cents) { this.cents = cents; }\n" +
+                "    public Money add(Money other) { return new Money(cents + other.cents); }\n" +
+                "}");
+        PsiClass registry = myFixture.addClass("package com.example; public class Registry {\n" +
+                "    public static final Registry INSTANCE = new Registry();\n" +
+                "    private int size;\n" +
+                "    public void register() { size++; }\n" +
+                "}");
+
+        assertTrue(new TestClassAnalyzer().analyze(money, TestLibraryAvailable.JUNIT_JUPITER).isParallelSafe());
+        assertFalse(new TestClassAnalyzer().analyze(registry, TestLibraryAvailable.JUNIT_JUPITER).isParallelSafe());
+    }
+
+    public void testRenderBenchmark() {
+        myFixture.configureByFile("generatetest/OrderService.java");
+        PsiElement elementAtCaret = myFixture.getFile().findElementAt(myFixture.getCaretOffset());
+        PsiClass psiClass = PsiTreeUtil.getParentOfType(elementAtCaret, PsiClass.class);
+
+        TestClassModel model = new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.NON, "OrderServiceBenchmark");
+        String text = new BenchmarkRenderer().render(model);
+
+        assertSameLinesWithFile(new File(getTestDataPath(), "generatetest/OrderServiceBenchmark.java").getPath(), text);
+    }
+
+    public void testRenderSkeleton() {
+        myFixture.addClass("package com.example.customer; public class Customer {}");
+        PsiClass psiClass = myFixture.addClass("package com.example; import javax.inject.Inject; import com.example.customer.Customer;\n" +
+                "public class BillingService {\n" +
+                "    @Inject private OrderRepository orderRepository;\n" +
+                "    public int bill(Customer customer, int amount) { return orderRepository.count(\"\"); }\n" +
+                "}");
+
+        TestClassModel model = new TestClassAnalyzer().analyzeSkeleton(psiClass, TestLibraryAvailable.JUNIT_JUPITER);
+        String text = new TestClassRenderer().render(model);
+
+        assertTrue(model.isSkeleton());
+        assertFalse(model.isParallelSafe());
+        assertEmpty(model.getMethodTests().get(0).getGivenStatements());
+        assertTrue(text, text.contains("import com.example.customer.Customer;"));
+        assertFalse(text, text.contains("import javax.inject.Inject;"));
+        assertTrue(text, text.contains("private OrderRepository orderRepository;"));
+        assertTrue(text, text.contains("billingService.bill((Customer) null, 0);"));
+    }
+
+    public void testCompleteSkeleton() {
+        myFixture.configureByFile("generatetest/OrderService.java");
+        PsiElement elementAtCaret = myFixture.getFile().findElementAt(myFixture.getCaretOffset());
+        PsiClass psiClass = PsiTreeUtil.getParentOfType(elementAtCaret, PsiClass.class);
+        TestClassAnalyzer analyzer = new TestClassAnalyzer();
+        PsiClass testClass = myFixture.addClass(new TestClassRenderer().render(analyzer.analyzeSkeleton(psiClass, TestLibraryAvailable.NON)));
+
+        TestClassModel model = analyzer.analyze(psiClass, TestLibraryAvailable.NON, "OrderServiceTest");
+        GenerationRun run = new GenerationRun("skeleton completion");
+        TestGenerationEngine engine = new TestGenerationEngine(getProject());
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+            assertEquals(1, engine.completeSkeleton(testClass, model, run));
+            assertEquals(0, engine.completeSkeleton(testClass, model, run));
+        });
+
+        String text = testClass.getText();
+        assertTrue(text, text.contains("//  given"));
+        assertTrue(text, text.contains("Mockito.when(orderRepository.count(ArgumentMatchers.any(String.class))).thenReturn(0);"));
+        assertTrue(text, text.contains("setUp();\n        //  given"));
+        assertTrue(text, text.contains("orderService.countOrders((String) null, 0L);"));
+    }
+
+    public void testFindsTestFileOfSkeletonWithoutIndexes() {
+        PsiClass tested = myFixture.addClass("package com.example; public class ShippingService { public void ship() {} }");
+        PsiClass untested = myFixture.addClass("package com.example; public class PackingService { public void pack() {} }");
+        myFixture.addClass("package com.example; public class ShippingServiceTest {}");
+
+        TestClassAnalyzer analyzer = new TestClassAnalyzer();
+        TestGenerationEngine engine = new TestGenerationEngine(getProject());
+
+        assertTrue(engine.hasTestFile(analyzer.analyzeSkeleton(tested, TestLibraryAvailable.JUNIT_JUPITER)));
+        assertFalse(engine.hasTestFile(analyzer.analyzeSkeleton(untested, TestLibraryAvailable.JUNIT_JUPITER)));
+    }
+
+    public void testRenderMembersOfExistingTest() {
+        myFixture.addClass("package com.example; public class OrderServiceTest {\n" +
+                "    @InjectMocks private OrderService service;\n" +
+                "    @Mock private OrderRepository orderRepository;\n" +
+                "    public void testCountOrders_Should_When() { service.countOrders(\"customer\"); }\n" +
+                "}");
+        myFixture.configureByFile("generatetest/OrderService.java");
+        PsiElement elementAtCaret = myFixture.getFile().findElementAt(myFixture.getCaretOffset());
+        PsiClass psiClass = PsiTreeUtil.getParentOfType(elementAtCaret, PsiClass.class);
+
+        TestClassModel model = new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.JUNIT_JUPITER);
+
+        assertNotNull(model.getExistingTestClass());
+        assertFalse(model.isAddInjectTarget());
+        assertEmpty(model.getMockFields());
+        List<String> members = new TestClassRenderer().renderMembers(model);
+        assertSize(1, members);
+        assertTrue(members.get(0), members.get(0).contains("public void testCountOrders2_Should_When()"));
+        assertTrue(members.get(0), members.get(0).contains("service.countOrders(\"\", 0L);"));
+    }
+
+    public void testRenderMembersOfExistingDirectConstructionTest() {
+        PsiClass psiClass = myFixture.addClass("package com.example; import javax.inject.Inject; public class InvoiceService {\n" +
+                "    private final OrderRepository orderRepository;\n" +
+                "    @Inject public InvoiceService(OrderRepository orderRepository) { this.orderRepository = orderRepository; }\n" +
+                "    public int count() { return orderRepository.count(\"\"); }\n" +
+                "    public int total(String customer) { return orderRepository.count(customer); }\n" +
+                "}");
+        myFixture.addClass("package com.example; public class InvoiceServiceTest {\n" +
+                "    private final OrderRepository orderRepository = Mockito.mock(OrderRepository.class);\n" +
+                "    private final InvoiceService invoiceService = new InvoiceService(orderRepository);\n" +
+                "    public void testCount_Should_When() { invoiceService.count(); }\n" +
+                "}");
+
+        TestClassModel model = new TestClassAnalyzer().analyze(psiClass, TestLibraryAvailable.JUNIT_JUPITER);
+
+        assertNotNull(model.getExistingTestClass());
+        assertEquals(TestRunnerMode.DIRECT_CONSTRUCTION, model.getRunnerMode());
+        assertFalse(model.isAddInjectTarget());
+        assertEmpty(model.getMockFields());
+        List<String> members = new TestClassRenderer().renderMembers(model);
+        assertSize(1, members);
+        assertTrue(members.get(0), members.get(0).contains("public void testTotal_Should_When()"));
+        assertTrue(members.get(0), members.get(0).contains("invoiceService.total(\"\");"));
+    }
+}
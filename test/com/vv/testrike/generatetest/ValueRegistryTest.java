@@ -0,0 +1,66 @@
+package com.vv.testrike.generatetest;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiType;
+import com.vv.testrike.LightTestrikeTestCase;
+
+public class ValueRegistryTest extends LightTestrikeTestCase {
+
+    private PsiClass psiClass;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.addClass("package com.example; public enum Status { ACTIVE, CLOSED }");
+        myFixture.addClass("package com.example; public interface Repository {}");
+        myFixture.addClass("package com.example; public final class Money { private Money() {} public static Money zero() { return new Money(); } }");
+        myFixture.addClass("package com.example; public class Order { private Order() {}\n" +
+                "    public static Builder builder() { return new Builder(); }\n" +
+                "    public static class Builder { public Order build() { return new Order(); } }\n" +
+                "}");
+        myFixture.addClass("package com.example; public class Customer { public Customer(String name, Status status) {} }");
+        myFixture.addClass("package com.example; public class Address { public Address(Customer customer) {} }");
+        myFixture.addClass("package com.example; public class Shipment { public Shipment(Address address) {} }");
+        psiClass = myFixture.addClass("package com.example; public class Values {\n" +
+                "    void values(char c, short s, java.util.List<String> list, Status status, Repository repository,\n" +
+                "                Money money, Order order, Customer customer, int[] numbers, Shipment shipment) {}\n" +
+                "}");
+    }
+
+    public void testDecidesValueByType() {
+        ValueRegistry values = new ValueRegistry();
+
+        assertEquals("'\\0'", values.getValue(parameterType(0)));
+        assertEquals("(short) 0", values.getValue(parameterType(1)));
+        assertEquals("java.util.Collections.emptyList()", values.getValue(parameterType(2)));
+        assertEquals("com.example.Status.ACTIVE", values.getValue(parameterType(3)));
+        assertEquals("org.mockito.Mockito.mock(com.example.Repository.class)", values.getValue(parameterType(4)));
+        assertEquals("com.example.Money.zero()", values.getValue(parameterType(5)));
+        assertEquals("com.example.Order.builder().build()", values.getValue(parameterType(6)));
+        assertEquals("new com.example.Customer(\"\", com.example.Status.ACTIVE)", values.getValue(parameterType(7)));
+        assertEquals("new int[0]", values.getValue(parameterType(8)));
+    }
+
+    public void testDecidesEachTypeOnce() {
+        ValueRegistry values = new ValueRegistry();
+
+        values.getValue(parameterType(7));
+        int typeCount = values.getTypeCount();
+        values.getValue(parameterType(7));
+        values.getValue(parameterType(3));
+
+        assertEquals(typeCount, values.getTypeCount());
+    }
+
+    public void testDecidesConstructorPerDepth() {
+        ValueRegistry values = new ValueRegistry();
+
+        assertEquals("new com.example.Shipment(new com.example.Address(org.mockito.Mockito.mock(com.example.Customer.class)))",
+                values.getValue(parameterType(9)));
+        assertEquals("new com.example.Customer(\"\", com.example.Status.ACTIVE)", values.getValue(parameterType(7)));
+    }
+
+    private PsiType parameterType(int index) {
+        return psiClass.findMethodsByName("values", false)[0].getParameterList().getParameters()[index].getType();
+    }
+}
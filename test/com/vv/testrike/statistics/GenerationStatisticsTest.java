@@ -0,0 +1,43 @@
+package com.vv.testrike.statistics;
+
+import com.vv.testrike.LightTestrikeTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class GenerationStatisticsTest extends LightTestrikeTestCase {
+
+    public void testKeepsLastRuns() {
+        GenerationStatistics statistics = GenerationStatistics.getInstance(getProject());
+        for (int i = 0; i < GenerationStatistics.MAX_RUNS + 5; i++) {
+            GenerationRun run = new GenerationRun("run " + i);
+            run.count(GenerationRun.CLASSES, i);
+            statistics.finish(run);
+        }
+
+        List<GenerationRun> runs = statistics.getRuns();
+        assertSize(GenerationStatistics.MAX_RUNS, runs);
+        assertEquals("run 5", runs.get(0).getKind());
+        assertEquals(Long.valueOf(GenerationStatistics.MAX_RUNS + 4), runs.get(runs.size() - 1).getCounters().get(GenerationRun.CLASSES));
+    }
+
+    public void testLogString() {
+        GenerationRun run = new GenerationRun("test classes");
+        run.addTime("analyze", TimeUnit.MILLISECONDS.toNanos(12));
+        run.addTime("analyze", TimeUnit.MILLISECONDS.toNanos(3));
+        run.count(GenerationRun.STUBS, 2);
+        run.finish();
+
+        assertTrue(run.toLogString(), run.toLogString().startsWith("kind=test_classes totalMs="));
+        assertTrue(run.toLogString(), run.toLogString().endsWith(" analyzeMs=15 stubs=2"));
+    }
+
+    public void testPercentile() {
+        List<Long> nanos = Arrays.asList(1_000_000L, 2_000_000L, 3_000_000L, 4_000_000L, 10_000_000L);
+
+        assertEquals(3, GenerationStatisticsPanel.percentile(nanos, 50));
+        assertEquals(10, GenerationStatisticsPanel.percentile(nanos, 90));
+        assertEquals(10, GenerationStatisticsPanel.percentile(nanos, 100));
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.Objects;
+
+class Key implements Comparable<Key> {
+    private final String name;
+    private final int id;
+    private transient int cachedHashCode;
+
+    Key(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    public int compareTo(Key that) {
+        int result = this.name.compareTo(that.name);
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(this.id, that.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Key that = (Key) o;
+        return this.id == that.id
+                && Objects.equals(this.name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = cachedHashCode;
+        if (h == 0) {
+            int result = Integer.hashCode(this.id);
+            result = 31 * result + Objects.hashCode(this.name);
+            h = result;
+            cachedHashCode = h;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,13 @@
+import java.util.Comparator;
+
+class ComparatorConstant implements Comparable<ComparatorConstant> {
+    private String name;
+    private long id;
+    private static final Comparator<ComparatorConstant> COMPARATOR =
+            Comparator.comparing((ComparatorConstant o) -> o.name)
+                    .thenComparingLong(o -> o.id);
+
+    public int compareTo(ComparatorConstant that) {
+        return COMPARATOR.compare(this, that);
+    }
+}
@@ -0,0 +1,9 @@
+import java.util.*;
+
+class Person {
+    private int age;
+
+    static Comparator<Person> byAge() {
+        return Comparator.comparingInt((Person p) -> p.age);
+    }
+}
@@ -0,0 +1,17 @@
+class HandWritten implements Comparable<HandWritten> {
+    private String name;
+    private int count;
+    private boolean active;
+
+    public int compareTo(HandWritten that) {
+        int result = Integer.compare(this.count, that.count);
+        if (result != 0) {
+            return result;
+        }
+        result = Boolean.compare(this.active, that.active);
+        if (result != 0) {
+            return result;
+        }
+        return this.name.compareTo(that.name);
+    }
+}
@@ -0,0 +1,10 @@
+import java.util.*;
+
+class Person {
+    private String name;
+    private static final Comparator<Person> COMPARATOR = Comparator.comparing((Person p) -> p.name);
+
+    static void sortAll(List<Person> people) {
+        people.sort(COMPARATOR);
+    }
+}
@@ -0,0 +1,9 @@
+class Key {
+    <caret>private final String name;
+    private final int id;
+
+    Key(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+}
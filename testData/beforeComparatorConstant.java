@@ -0,0 +1,4 @@
+class ComparatorConstant {
+    <caret>private String name;
+    private long id;
+}
@@ -0,0 +1,5 @@
+class HandWritten {
+    <caret>private String name;
+    private int count;
+    private boolean active;
+}
@@ -0,0 +1,9 @@
+import java.util.*;
+
+class Person {
+    private String name;
+
+    static void sortAll(List<Person> people) {
+        people.sort(Comparator.comparing((Person p) -> p.na<caret>me));
+    }
+}
@@ -0,0 +1,21 @@
+import java.util.*;
+
+class Person {
+    private int age;
+    private long id;
+    private String name;
+
+    static void sortAll(List<Person> people) {
+        people.sort(<warning descr="Comparator is built again on every sort() call">Comparator.<warning descr="comparing() boxes the primitive key on every comparison">comparing</warning>((Person p) -> p.age).thenComparing(p -> p.name)</warning>);
+    }
+
+    static void sortEach(List<List<Person>> groups) {
+        for (List<Person> group : groups) {
+            Collections.sort(group, <warning descr="Comparator is built again on every loop iteration">Comparator.comparingLong((Person p) -> p.id)</warning>);
+        }
+    }
+
+    static Comparator<Person> byId() {
+        return Comparator.comparing((Person p) -> p.name).<warning descr="thenComparing() boxes the primitive key on every comparison">thenComparing</warning>(p -> p.id);
+    }
+}
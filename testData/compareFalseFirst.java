@@ -0,0 +1,13 @@
+import com.google.common.collect.ComparisonChain;
+
+public class Flags implements Comparable<Flags> {
+    private boolean active;
+    private int count;
+
+    public int compareTo(Flags that) {
+        return ComparisonChain.start()
+                .compare(this.count, that.count)
+                .<warning descr="compare() of booleans can be replaced with compareFalseFirst()">compare</warning>(this.active, that.active)
+                .result();
+    }
+}
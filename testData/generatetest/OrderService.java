@@ -0,0 +1,12 @@
+package com.example;
+
+import javax.inject.Inject;
+
+public class Order<caret>Service {
+    @Inject
+    private OrderRepository orderRepository;
+
+    public int countOrders(String customer, long limit) {
+        return orderRepository.count(customer);
+    }
+}
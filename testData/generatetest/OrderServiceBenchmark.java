@@ -0,0 +1,48 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OrderServiceBenchmark {
+
+    @InjectMocks
+    OrderService orderService;
+
+    @Mock
+    OrderRepository orderRepository;
+
+    String countOrdersArgument1;
+    long countOrdersArgument2;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        countOrdersArgument1 = "";
+        countOrdersArgument2 = 0L;
+    }
+
+    @Benchmark
+    public void countOrders(Blackhole blackhole) {
+        blackhole.consume(orderService.countOrders(countOrdersArgument1, countOrdersArgument2));
+    }
+}
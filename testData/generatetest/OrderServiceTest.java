@@ -0,0 +1,31 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@Execution(ExecutionMode.CONCURRENT)
+@ExtendWith(MockitoExtension.class)
+public class OrderServiceTest {
+
+    @InjectMocks
+    private OrderService orderService;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Test
+    public void testCountOrders_Should_When() {
+        //  given
+        Mockito.when(orderRepository.count(ArgumentMatchers.any(String.class))).thenReturn(0);
+
+        //  when
+        orderService.countOrders("", 0L);
+    }
+}
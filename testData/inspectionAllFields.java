@@ -0,0 +1,13 @@
+class Simple implements Comparable<Simple> {
+    private String foo;
+    private String bar;
+    private int baz;
+
+    public boolean equals(Object other) {
+        return other instanceof Simple && ((Simple)other).foo.equals(foo) && ((Simple)other).bar.equals(bar) && ((Simple)other).baz == baz;
+    }
+
+    public int <warning descr="The compareTo() method does not reference 'foo' which is referenced from equals(); inconsistency may result"><warning descr="The compareTo() method does not reference 'baz' which is referenced from equals(); inconsistency may result">compareTo</warning></warning>(Simple other) {
+        return bar.compareTo(other.bar);
+    }
+}